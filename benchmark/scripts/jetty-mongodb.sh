@@ -1,3 +1,3 @@
 #!/bin/bash
 
-setup.sh -Dsabina.backend=jetty -Dsabina.benchmark.repository=mongodb
+setup.sh -Dsabina.backend=jetty -Dsabina.jetty.sessions=false -Dsabina.benchmark.repository=mongodb
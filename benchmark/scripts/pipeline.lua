@@ -0,0 +1,14 @@
+-- Sends 'depth' pipelined requests per round trip (depth is the first script argument)
+
+init = function (args)
+    local depth = tonumber (args[1]) or 1
+    local requests = {}
+    for i = 1, depth do
+        requests[i] = wrk.format ()
+    end
+    pipelined = table.concat (requests)
+end
+
+request = function ()
+    return pipelined
+end
@@ -0,0 +1,25 @@
+#!/bin/bash
+#
+# Pipelined plaintext benchmark of the backends (requires 'wrk'). Backends to test can be
+# passed as arguments: 'plaintext.sh netty undertow-native'
+#
+
+cd $(dirname $0)/..
+gradle -q installDist || exit 1
+
+URL=http://localhost:5050/plaintext
+WRK="wrk -H Connection:keep-alive -t 8 -s scripts/pipeline.lua"
+
+for backend in ${@:-jetty undertow undertow-native netty}; do
+    export JAVA_OPTS="-Dsabina.backend=$backend -Dsabina.jetty.sessions=false"
+    build/install/benchmark/bin/benchmark >/dev/null 2>&1 &
+    PID=$!
+    sleep 5
+
+    $WRK -d 5 -c 8 $URL -- 16 >/dev/null # Warm up
+    echo -e "\n$backend"
+    $WRK -d 15 -c 256 $URL -- 16 | grep "Latency\|Requests/sec"
+
+    kill $PID
+    wait $PID 2>/dev/null
+done
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.benchmark;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static sabina.HttpMethod.AFTER;
+import static sabina.HttpMethod.GET;
+import static sabina.content.JsonContent.toJson;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.*;
+import sabina.Body;
+import sabina.Route;
+import sabina.benchmark.ServletMocks.CountingOutputStream;
+import sabina.benchmark.ServletMocks.StubResponse;
+import sabina.route.RouteMatcher;
+import sabina.route.RouteMatcherFactory;
+import sabina.server.MatcherFilter;
+
+/**
+ * Whole request processing inside the filter (matching, filters, handler and writing the body)
+ * with the benchmark application routes (without database access) and mock servlet objects.
+ *
+ * @author jamming
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class MatcherFilterBenchmark {
+    @Param ({ "simple", "trie" })
+    public String matcher;
+
+    private final CountingOutputStream output = new CountingOutputStream ();
+    private final StubResponse response = ServletMocks.response (output);
+
+    private MatcherFilter filter;
+    private HttpServletRequest json;
+    private HttpServletRequest plaintext;
+    private HttpServletRequest encoded;
+    private HttpServletRequest world;
+    private HttpServletRequest missing;
+
+    @Setup public void setup () {
+        RouteMatcher routeMatcher = RouteMatcherFactory.create (matcher);
+        routeMatcher.processRoute (new Route (GET, "/json", it -> toJson (new Message ())));
+        routeMatcher.processRoute (new Route (GET, "/plaintext", it -> "Hello, World!"));
+        Body hello = Body.of ("Hello, World!", "text/plain");
+        routeMatcher.processRoute (new Route (GET, "/encoded", it -> hello));
+        routeMatcher.processRoute (
+            new Route (GET, "/world/:id<int>", it -> toJson (it.intParam ("id"))));
+        routeMatcher.processRoute (new Route (AFTER, it -> {
+            it.response.header ("Server", "Sabina");
+            return null;
+        }));
+        filter = new MatcherFilter (routeMatcher, "jetty", false);
+
+        Map<String, String> headers = new HashMap<> ();
+        headers.put ("accept", "application/json");
+        headers.put ("host", "localhost:8080");
+
+        json = ServletMocks.request ("GET", "/json", headers);
+        plaintext = ServletMocks.request ("GET", "/plaintext", headers);
+        encoded = ServletMocks.request ("GET", "/encoded", headers);
+        world = ServletMocks.request ("GET", "/world/42", headers);
+        missing = ServletMocks.request ("GET", "/missing", headers);
+    }
+
+    @Benchmark public long json () throws IOException, ServletException {
+        return handle (json);
+    }
+
+    @Benchmark public long plaintext () throws IOException, ServletException {
+        return handle (plaintext);
+    }
+
+    @Benchmark public long encoded () throws IOException, ServletException {
+        return handle (encoded);
+    }
+
+    @Benchmark public long world () throws IOException, ServletException {
+        return handle (world);
+    }
+
+    @Benchmark public long notFound () throws IOException, ServletException {
+        return handle (missing);
+    }
+
+    /* The recorded content type is cleared to run every call as a new response */
+    private long handle (HttpServletRequest request) throws IOException, ServletException {
+        response.reset ();
+        filter.doFilter (request, response, null);
+        return output.count;
+    }
+}
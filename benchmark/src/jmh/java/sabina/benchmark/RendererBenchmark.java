@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.benchmark;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static sabina.content.JsonContent.toJson;
+import static sabina.content.XmlContent.toXml;
+import static sabina.content.YamlContent.toYaml;
+import static sabina.view.MustacheView.renderMustache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of the renderers of the 'extra' module with the benchmark application models.
+ *
+ * @author jamming
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class RendererBenchmark {
+    /** JAXB needs a root element and a default constructor. */
+    @XmlRootElement public static class XmlWorld {
+        public int id = 42;
+        public int randomNumber = 8141;
+    }
+
+    private final List<Fortune> fortunes = new ArrayList<> ();
+    private final World world = new World (42, 8141);
+    /** The world as a map (SnakeYAML only dumps bean properties). */
+    private final Map<String, Integer> worldMap = new LinkedHashMap<> ();
+    private final XmlWorld xmlWorld = new XmlWorld ();
+
+    @Setup public void setup () {
+        worldMap.put ("id", world.id);
+        worldMap.put ("randomNumber", world.randomNumber);
+
+        for (int ii = 1; ii <= 12; ii++)
+            fortunes.add (new Fortune (ii, "Fortune " + ii + " <script>alert('x')</script>"));
+    }
+
+    @Benchmark public String json () {
+        return toJson (world);
+    }
+
+    @Benchmark public String yaml () {
+        return toYaml (worldMap);
+    }
+
+    @Benchmark public String xml () throws JAXBException {
+        return toXml (xmlWorld);
+    }
+
+    @Benchmark public String mustache () {
+        return renderMustache ("fortunes.mustache", fortunes);
+    }
+}
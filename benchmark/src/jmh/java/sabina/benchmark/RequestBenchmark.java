@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.benchmark;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static sabina.HttpMethod.GET;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.*;
+import sabina.Request;
+import sabina.Route;
+import sabina.route.PathSegments;
+import sabina.route.RouteMatch;
+import sabina.server.ServerRequest;
+
+/**
+ * Cost of splitting the path, building a request and reading its route parameters.
+ *
+ * @author jamming
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class RequestBenchmark {
+    private static final String PATH = "/users/joe/posts/42/comments/7";
+
+    private final Route route =
+        new Route (GET, "/users/:user/posts/:post<int>/comments/:comment", it -> "");
+
+    private RouteMatch match;
+
+    @Setup public void setup () {
+        match = new RouteMatch (route, PathSegments.of (PATH));
+    }
+
+    @Benchmark public PathSegments splitPath () {
+        return PathSegments.of (PATH);
+    }
+
+    @Benchmark public Request createRequest () {
+        RouteMatch routeMatch = new RouteMatch (route, PathSegments.of (PATH));
+        return new Request (routeMatch, (ServerRequest)null, null);
+    }
+
+    @Benchmark public String stringParam () {
+        return new Request (match, (ServerRequest)null, null).params ("user");
+    }
+
+    @Benchmark public int intParam () {
+        return new Request (match, (ServerRequest)null, null).intParam ("post");
+    }
+
+    @Benchmark public Map<String, String> allParams () {
+        return new Request (match, (ServerRequest)null, null).params ();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.benchmark;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static sabina.HttpMethod.BEFORE;
+import static sabina.HttpMethod.GET;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.*;
+import sabina.Route;
+import sabina.route.RouteMatch;
+import sabina.route.RouteMatcher;
+import sabina.route.RouteMatcherFactory;
+import sabina.route.RoutePlan;
+
+/**
+ * Route lookup cost depending on the matcher implementation and the number of routes. Half of
+ * the routes are static and the other half have a parameter. The requested paths hit the last
+ * registered routes (the worst case for the simple matcher).
+ *
+ * @author jamming
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class RouteMatcherBenchmark {
+    @Param ({ "10", "100", "1000" })
+    public int routes;
+
+    @Param ({ "simple", "trie" })
+    public String matcher;
+
+    private RouteMatcher routeMatcher;
+    private String staticPath;
+    private String paramPath;
+
+    @Setup public void setup () {
+        routeMatcher = RouteMatcherFactory.create (matcher);
+        routeMatcher.processRoute (new Route (BEFORE, it -> "all"));
+        routeMatcher.processRoute (new Route (BEFORE, "/resource0/*", it -> "filter"));
+
+        for (int ii = 0; ii < routes / 2; ii++) {
+            String path = "/resource" + ii;
+            routeMatcher.processRoute (new Route (GET, path, it -> path));
+            routeMatcher.processRoute (new Route (GET, path + "/:id", it -> path));
+        }
+
+        int last = routes / 2 - 1;
+        staticPath = "/resource" + last;
+        paramPath = "/resource" + last + "/42";
+    }
+
+    @Benchmark public RouteMatch findStaticTarget () {
+        return routeMatcher.findTarget (GET, staticPath);
+    }
+
+    @Benchmark public RouteMatch findParamTarget () {
+        return routeMatcher.findTarget (GET, paramPath);
+    }
+
+    @Benchmark public RouteMatch findMissingTarget () {
+        return routeMatcher.findTarget (GET, "/missing/route");
+    }
+
+    @Benchmark public List<RouteMatch> findFilters () {
+        return routeMatcher.findTargets (BEFORE, "/resource0/42");
+    }
+
+    @Benchmark public RoutePlan findPlan () {
+        return routeMatcher.findPlan (GET, paramPath);
+    }
+}
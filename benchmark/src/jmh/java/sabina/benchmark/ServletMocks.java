@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.benchmark;
+
+import static java.util.Collections.emptyEnumeration;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.security.Principal;
+import java.util.*;
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+/**
+ * Minimal servlet request and response to call filters without a server. Only the methods used
+ * by Sabina on the request path are implemented, the rest return default values.
+ *
+ * @author jamming
+ */
+final class ServletMocks {
+    private ServletMocks () {
+        throw new IllegalStateException ();
+    }
+
+    /** Output stream that only counts the written bytes. */
+    static final class CountingOutputStream extends ServletOutputStream {
+        long count;
+
+        @Override public void write (int b) {
+            count++;
+        }
+
+        @Override public void write (byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override public boolean isReady () {
+            return true;
+        }
+
+        @Override public void setWriteListener (WriteListener writeListener) {
+            throw new UnsupportedOperationException ();
+        }
+    }
+
+    /** Request with a method, an URI and headers (names in lower case). */
+    static final class StubRequest implements HttpServletRequest {
+        private final String method;
+        private final String uri;
+        private final Map<String, String> headers;
+
+        StubRequest (String method, String uri, Map<String, String> headers) {
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+        }
+
+        @Override public String getMethod () { return method; }
+        @Override public String getRequestURI () { return uri; }
+        @Override public String getHeader (String name) {
+            return headers.get (name.toLowerCase ());
+        }
+
+        @Override public String getAuthType () { return null; }
+        @Override public Cookie[] getCookies () { return null; }
+        @Override public long getDateHeader (String name) { return -1; }
+        @Override public Enumeration<String> getHeaders (String name) {
+            return emptyEnumeration ();
+        }
+        @Override public Enumeration<String> getHeaderNames () { return emptyEnumeration (); }
+        @Override public int getIntHeader (String name) { return -1; }
+        @Override public String getPathInfo () { return null; }
+        @Override public String getPathTranslated () { return null; }
+        @Override public String getContextPath () { return ""; }
+        @Override public String getQueryString () { return null; }
+        @Override public String getRemoteUser () { return null; }
+        @Override public boolean isUserInRole (String role) { return false; }
+        @Override public Principal getUserPrincipal () { return null; }
+        @Override public String getRequestedSessionId () { return null; }
+        @Override public StringBuffer getRequestURL () { return new StringBuffer (uri); }
+        @Override public String getServletPath () { return ""; }
+        @Override public HttpSession getSession (boolean create) { return null; }
+        @Override public HttpSession getSession () { return null; }
+        @Override public String changeSessionId () { return null; }
+        @Override public boolean isRequestedSessionIdValid () { return false; }
+        @Override public boolean isRequestedSessionIdFromCookie () { return false; }
+        @Override public boolean isRequestedSessionIdFromURL () { return false; }
+        @Deprecated @Override public boolean isRequestedSessionIdFromUrl () { return false; }
+        @Override public boolean authenticate (HttpServletResponse response) { return false; }
+        @Override public void login (String username, String password) {}
+        @Override public void logout () {}
+        @Override public Collection<Part> getParts () { return emptyList (); }
+        @Override public Part getPart (String name) { return null; }
+        @Override public <T extends HttpUpgradeHandler> T upgrade (Class<T> handlerClass) {
+            throw new UnsupportedOperationException ();
+        }
+
+        @Override public Object getAttribute (String name) { return null; }
+        @Override public Enumeration<String> getAttributeNames () { return emptyEnumeration (); }
+        @Override public String getCharacterEncoding () { return null; }
+        @Override public void setCharacterEncoding (String env) {}
+        @Override public int getContentLength () { return -1; }
+        @Override public long getContentLengthLong () { return -1; }
+        @Override public String getContentType () { return null; }
+        @Override public ServletInputStream getInputStream () { return null; }
+        @Override public String getParameter (String name) { return null; }
+        @Override public Enumeration<String> getParameterNames () { return emptyEnumeration (); }
+        @Override public String[] getParameterValues (String name) { return null; }
+        @Override public Map<String, String[]> getParameterMap () { return emptyMap (); }
+        @Override public String getProtocol () { return "HTTP/1.1"; }
+        @Override public String getScheme () { return "http"; }
+        @Override public String getServerName () { return "localhost"; }
+        @Override public int getServerPort () { return 8080; }
+        @Override public BufferedReader getReader () { return null; }
+        @Override public String getRemoteAddr () { return "127.0.0.1"; }
+        @Override public String getRemoteHost () { return "localhost"; }
+        @Override public void setAttribute (String name, Object o) {}
+        @Override public void removeAttribute (String name) {}
+        @Override public Locale getLocale () { return Locale.getDefault (); }
+        @Override public Enumeration<Locale> getLocales () { return emptyEnumeration (); }
+        @Override public boolean isSecure () { return false; }
+        @Override public RequestDispatcher getRequestDispatcher (String path) { return null; }
+        @Deprecated @Override public String getRealPath (String path) { return null; }
+        @Override public int getRemotePort () { return 0; }
+        @Override public String getLocalName () { return "localhost"; }
+        @Override public String getLocalAddr () { return "127.0.0.1"; }
+        @Override public int getLocalPort () { return 8080; }
+        @Override public ServletContext getServletContext () { return null; }
+        @Override public AsyncContext startAsync () { throw new IllegalStateException (); }
+        @Override public AsyncContext startAsync (
+            ServletRequest request, ServletResponse response) {
+
+            throw new IllegalStateException ();
+        }
+        @Override public boolean isAsyncStarted () { return false; }
+        @Override public boolean isAsyncSupported () { return false; }
+        @Override public AsyncContext getAsyncContext () { throw new IllegalStateException (); }
+        @Override public DispatcherType getDispatcherType () { return DispatcherType.REQUEST; }
+    }
+
+    /**
+     * Response recording the status and content type and discarding headers. The body goes to
+     * a {@link CountingOutputStream}. {@link #reset()} clears the recorded values.
+     */
+    static final class StubResponse implements HttpServletResponse {
+        private final CountingOutputStream output;
+        private String contentType;
+        private int status = SC_OK;
+
+        StubResponse (CountingOutputStream output) {
+            this.output = output;
+        }
+
+        @Override public ServletOutputStream getOutputStream () { return output; }
+        @Override public String getContentType () { return contentType; }
+        @Override public void setContentType (String type) { contentType = type; }
+        @Override public void setStatus (int sc) { status = sc; }
+        @Override public int getStatus () { return status; }
+
+        @Override public void reset () {
+            contentType = null;
+            status = SC_OK;
+        }
+
+        @Override public void addCookie (Cookie cookie) {}
+        @Override public boolean containsHeader (String name) { return false; }
+        @Override public String encodeURL (String url) { return url; }
+        @Override public String encodeRedirectURL (String url) { return url; }
+        @Deprecated @Override public String encodeUrl (String url) { return url; }
+        @Deprecated @Override public String encodeRedirectUrl (String url) { return url; }
+        @Override public void sendError (int sc, String msg) { status = sc; }
+        @Override public void sendError (int sc) { status = sc; }
+        @Override public void sendRedirect (String location) { status = SC_FOUND; }
+        @Override public void setDateHeader (String name, long date) {}
+        @Override public void addDateHeader (String name, long date) {}
+        @Override public void setHeader (String name, String value) {}
+        @Override public void addHeader (String name, String value) {}
+        @Override public void setIntHeader (String name, int value) {}
+        @Override public void addIntHeader (String name, int value) {}
+        @Deprecated @Override public void setStatus (int sc, String sm) { status = sc; }
+        @Override public String getHeader (String name) { return null; }
+        @Override public Collection<String> getHeaders (String name) { return emptyList (); }
+        @Override public Collection<String> getHeaderNames () { return emptyList (); }
+
+        @Override public String getCharacterEncoding () { return "ISO-8859-1"; }
+        @Override public PrintWriter getWriter () {
+            throw new UnsupportedOperationException ();
+        }
+        @Override public void setCharacterEncoding (String charset) {}
+        @Override public void setContentLength (int len) {}
+        @Override public void setContentLengthLong (long len) {}
+        @Override public void setBufferSize (int size) {}
+        @Override public int getBufferSize () { return 0; }
+        @Override public void flushBuffer () {}
+        @Override public void resetBuffer () {}
+        @Override public boolean isCommitted () { return false; }
+        @Override public void setLocale (Locale loc) {}
+        @Override public Locale getLocale () { return Locale.getDefault (); }
+    }
+
+    static StubRequest request (String method, String uri, Map<String, String> headers) {
+        return new StubRequest (method, uri, headers);
+    }
+
+    static StubResponse response (CountingOutputStream output) {
+        return new StubResponse (output);
+    }
+}
@@ -16,21 +16,22 @@ package sabina.benchmark;
 
 import static java.lang.Integer.parseInt;
 import static java.lang.System.getProperty;
+import static sabina.HttpMethod.GET;
 import static sabina.content.JsonContent.toJson;
 import static sabina.view.MustacheView.renderMustache;
 
+import sabina.Body;
 import sabina.Request;
 
 import java.util.*;
-import java.util.Date;
 import javax.servlet.annotation.WebListener;
 
 @WebListener public final class Application extends sabina.Application {
     static final String SETTINGS_RESOURCE = "/server.properties";
     static final int DB_ROWS = 10000;
 
-    private static final String MESSAGE = "Hello, World!";
     private static final String CONTENT_TYPE_TEXT = "text/plain";
+    private static final Body MESSAGE = Body.of ("Hello, World!", CONTENT_TYPE_TEXT);
     private static final String CONTENT_TYPE_JSON = "application/json";
     private static final String QUERIES_PARAM = "queries";
 
@@ -116,7 +117,6 @@ import javax.servlet.annotation.WebListener;
     }
 
     private Object getPlaintext (Request it) {
-        it.response.type (CONTENT_TYPE_TEXT);
         return MESSAGE;
     }
 
@@ -125,14 +125,12 @@ import javax.servlet.annotation.WebListener;
         return toJson (new Message ());
     }
 
-    private void addCommonHeaders (Request it) {
-        it.header ("Server", "Undertow/1.1.2");
-        it.response.addDateHeader ("Date", new Date ().getTime ());
-    }
-
     public Application () {
         routes ();
 
+        header ("Server", "Undertow/1.1.2");
+        dateHeader (true);
+
         Properties settings = loadConfiguration ();
 
         bind (settings.getProperty ("web.host"));
@@ -147,12 +145,11 @@ import javax.servlet.annotation.WebListener;
 
 //    @Override
     protected void routes () {
-        get ("/json", this::getJson);
+        nonBlocking (GET, "/json", this::getJson);
         get ("/db", this::getDb);
         get ("/query", this::getDb);
         get ("/fortune", this::getFortunes);
         get ("/update", this::getUpdates);
-        get ("/plaintext", this::getPlaintext);
-        after (this::addCommonHeaders);
+        nonBlocking (GET, "/plaintext", this::getPlaintext);
     }
 }
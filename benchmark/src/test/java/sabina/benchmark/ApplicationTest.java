@@ -96,6 +96,10 @@ import org.testng.annotations.Test;
         checkDbRequest ("/query?queries=10", 10);
     }
 
+    public void twenty_queries () throws IOException {
+        checkDbRequest ("/query?queries=20", 20);
+    }
+
     public void one_hundred_queries () throws IOException {
         checkDbRequest ("/query?queries=100", 100);
     }
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.benchmark;
+
+import java.io.IOException;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * <p>Stress test of a blocking endpoint ('/query?queries=20') with many concurrent clients. Run
+ * it with '-Psabina.executor=platform' and '-Psabina.executor=virtual' to compare handlers
+ * running in container threads against handlers running in virtual threads. It is excluded from
+ * the build unless '-Psabina.stress' is passed.
+ *
+ * @author jamming
+ */
+@Test (threadPoolSize = 256, invocationCount = 5000)
+public final class ExecutorStressTest {
+    private static final int WARM_UP = 100;
+
+    private final ApplicationTest tests = new ApplicationTest ();
+
+    @BeforeClass public void setup () throws IOException {
+        tests.setup ();
+
+        for (int ii = 0; ii < WARM_UP; ii++)
+            tests.twenty_queries ();
+    }
+
+    @AfterClass public void close () {
+        tests.close ();
+    }
+
+    public void stress_twenty_queries () throws IOException {
+        tests.twenty_queries ();
+    }
+}
@@ -14,21 +14,115 @@
 
 package sabina.view;
 
+import static co.there4.bali.Configuration.configuration;
 import static com.samskivert.mustache.Mustache.compiler;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.samskivert.mustache.Mustache;
 import com.samskivert.mustache.Template;
 import co.there4.bali.Io;
 
+/**
+ * Renders Mustache templates from the classpath. Templates are compiled once and kept by name
+ * (compiled templates are thread safe).
+ *
+ * <p>If 'sabina.mustache.reload' is true (development) templates loaded from files are compiled
+ * again when the file is modified.
+ */
 public class MustacheView {
+    /** Compiled template along its source (to check if it has changed). */
+    private static final class CompiledTemplate {
+        final Template template;
+        final File file;
+        /* Read before the file, a change while compiling is picked up on the next render */
+        final long lastModified;
+
+        CompiledTemplate (Template template, File file, long lastModified) {
+            this.template = template;
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        boolean modified () {
+            return file != null && file.lastModified () != lastModified;
+        }
+    }
+
+    private static final Mustache.Compiler COMPILER = compiler ();
+    private static final Map<String, CompiledTemplate> TEMPLATES = new ConcurrentHashMap<> ();
+    private static final boolean RELOAD = reload ();
+
+    private static boolean reload () {
+        Object value = configuration ().get ("sabina.mustache.reload");
+        return value != null && Boolean.parseBoolean (value.toString ());
+    }
+
     public static String renderMustache (String templateName, Object model) {
-        InputStream resourceStream = Io.SYSTEM_CLASS_LOADER.getResourceAsStream (templateName);
-        InputStreamReader resourceReader = new InputStreamReader (resourceStream);
-        BufferedReader reader = new BufferedReader (resourceReader);
-        Template template = compiler ().compile (reader);
-        return template.execute (model);
+        return template (templateName, RELOAD).execute (model);
+    }
+
+    /**
+     * Renders a template straight to a writer (ie: wrapping an output stream) without building
+     * the result in memory.
+     *
+     * @param templateName Template path in the classpath.
+     * @param model Template context.
+     * @param writer Destination of the rendered template (it is not closed).
+     */
+    public static void renderMustache (String templateName, Object model, Writer writer) {
+        template (templateName, RELOAD).execute (model, writer);
+    }
+
+    /**
+     * Returns the compiled template, compiling it the first time it is used.
+     *
+     * @param templateName Template path in the classpath.
+     * @param reload If true, templates loaded from files are compiled again when modified.
+     * @return The compiled template.
+     */
+    static Template template (String templateName, boolean reload) {
+        CompiledTemplate compiled =
+            TEMPLATES.computeIfAbsent (templateName, name -> compile (name, reload));
+        if (reload && compiled.modified ()) {
+            compiled = compile (templateName, true);
+            TEMPLATES.put (templateName, compiled);
+        }
+        return compiled.template;
+    }
+
+    private static CompiledTemplate compile (String templateName, boolean reload) {
+        URL url = Io.SYSTEM_CLASS_LOADER.getResource (templateName);
+        if (url == null)
+            throw new IllegalArgumentException ("Template not found: " + templateName);
+
+        File file = reload? file (url) : null;
+        long lastModified = file == null? 0 : file.lastModified ();
+        try (Reader reader = new InputStreamReader (url.openStream (), UTF_8)) {
+            return new CompiledTemplate (COMPILER.compile (reader), file, lastModified);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException (e);
+        }
+    }
+
+    /* Templates inside jars do not change, only files are checked */
+    private static File file (URL url) {
+        try {
+            return url.getProtocol ().equals ("file")? new File (url.toURI ()) : null;
+        }
+        catch (URISyntaxException e) {
+            return null;
+        }
     }
 }
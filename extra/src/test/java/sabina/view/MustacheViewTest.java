@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.view;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonMap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static sabina.view.MustacheView.renderMustache;
+import static sabina.view.MustacheView.template;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import com.samskivert.mustache.Template;
+import org.testng.annotations.Test;
+
+@Test public class MustacheViewTest {
+    private static final Map<String, String> MODEL = singletonMap ("name", "World");
+
+    public void templates_are_compiled_once () {
+        Template template = template ("hello.mustache", false);
+        assertSame (template ("hello.mustache", false), template);
+        assertSame (template ("hello.mustache", true), template);
+        assertEquals (renderMustache ("hello.mustache", MODEL), "Hello World!\n");
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void missing_templates_are_rejected () {
+        renderMustache ("missing.mustache", MODEL);
+    }
+
+    public void templates_are_rendered_to_writers () {
+        StringWriter writer = new StringWriter ();
+        renderMustache ("hello.mustache", MODEL, writer);
+        assertEquals (writer.toString (), "Hello World!\n");
+    }
+
+    public void modified_templates_are_compiled_again ()
+        throws IOException, URISyntaxException {
+
+        Path folder = Paths.get (getClass ().getResource ("/hello.mustache").toURI ()).getParent ();
+        Path file = folder.resolve ("reload.mustache");
+        Files.write (file, "Hi {{name}}".getBytes (UTF_8));
+        try {
+            Template template = template ("reload.mustache", true);
+            assertEquals (template.execute (MODEL), "Hi World");
+            assertSame (template ("reload.mustache", true), template);
+
+            long modified = Files.getLastModifiedTime (file).toMillis ();
+            Files.write (file, "Bye {{name}}".getBytes (UTF_8));
+            // Some file systems store seconds, the change could have the same time
+            file.toFile ().setLastModified (modified + 10_000);
+
+            Template reloaded = template ("reload.mustache", true);
+            assertNotSame (reloaded, template);
+            assertEquals (reloaded.execute (MODEL), "Bye World");
+        }
+        finally {
+            Files.delete (file);
+        }
+    }
+}
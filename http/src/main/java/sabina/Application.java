@@ -43,6 +43,25 @@ public abstract class Application implements Router {
         server.backend (backend);
     }
 
+    /**
+     * Adds a header to all responses (filters and handlers can override it).
+     *
+     * @param name Header name.
+     * @param value Header value.
+     */
+    public void header (String name, String value) {
+        server.header (name, value);
+    }
+
+    /**
+     * Adds the 'Date' header to all responses (formatted once per second).
+     *
+     * @param enabled True to add the 'Date' header.
+     */
+    public void dateHeader (boolean enabled) {
+        server.dateHeader (enabled);
+    }
+
     /**
      * Set the port that Sabina should listen on. If not called the default port
      * is 4567. This has to be called before any route mapping is done.
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Response content encoded once (ie: constant texts returned by handlers). Handlers returning
+ * a body skip the encoding on each request, its bytes are written as they are with a known
+ * length.
+ *
+ * <p>Example: <code>static final Body HELLO = Body.of ("Hello, World!", "text/plain");</code>
+ *
+ * @author jamming
+ */
+public final class Body {
+    /**
+     * Creates a body with the UTF-8 bytes of a text (its content type is set by the server).
+     *
+     * @param text Body content.
+     * @return The encoded body.
+     */
+    public static Body of (final String text) {
+        return of (text, null);
+    }
+
+    /**
+     * Creates a body with the UTF-8 bytes of a text.
+     *
+     * @param text Body content.
+     * @param contentType Content type sent if the handler does not set one (can be null).
+     * @return The encoded body.
+     */
+    public static Body of (final String text, final String contentType) {
+        if (text == null)
+            throw new IllegalArgumentException ("Body text is required");
+        return new Body (text.getBytes (UTF_8), contentType);
+    }
+
+    /**
+     * Creates a body with a copy of the given bytes.
+     *
+     * @param bytes Body content.
+     * @param contentType Content type sent if the handler does not set one (can be null).
+     * @return The body.
+     */
+    public static Body of (final byte[] bytes, final String contentType) {
+        if (bytes == null)
+            throw new IllegalArgumentException ("Body bytes are required");
+        return new Body (bytes.clone (), contentType);
+    }
+
+    /** Content type to use if the handler did not set one (null to use the default one). */
+    public final String contentType;
+    private final byte[] bytes;
+
+    private Body (final byte[] bytes, final String contentType) {
+        this.bytes = bytes;
+        this.contentType = contentType;
+    }
+
+    /** @return The size of the body in bytes. */
+    public int length () {
+        return bytes.length;
+    }
+
+    /**
+     * Returns a buffer to send the body. The buffer shares the body content and it must not
+     * be modified.
+     *
+     * @return A new buffer (positioned at the start) sharing the body bytes.
+     */
+    public ByteBuffer buffer () {
+        return ByteBuffer.wrap (bytes);
+    }
+
+    /** @return The body decoded as UTF-8 text. */
+    @Override public String toString () {
+        return new String (bytes, UTF_8);
+    }
+}
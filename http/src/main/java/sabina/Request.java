@@ -14,23 +14,22 @@
 
 package sabina;
 
+import static co.there4.bali.Checks.require;
 import static java.lang.Math.min;
 import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
-import static java.util.logging.Logger.getLogger;
-import static co.there4.bali.Builders.entry;
 
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.logging.Logger;
-import javax.servlet.RequestDispatcher;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import sabina.route.PathSegments;
 import sabina.route.RouteMatch;
+import sabina.server.ServerRequest;
+import sabina.server.ServerResponse;
 
 /**
  * Provides information about the HTTP request.
@@ -45,7 +44,6 @@ import sabina.route.RouteMatch;
  * @author Per Wendel
  */
 public final class Request {
-    private static final Logger LOG = getLogger(Request.class.getName ());
     private static final String USER_AGENT = "user-agent";
 
     public static List<String> convertRouteToList (final String route) {
@@ -59,10 +57,13 @@ public final class Request {
     }
 
     public final Response response;
-    private final Map<String, String> params;
-    private final HttpServletRequest servletRequest;
+    private final PathSegments segments;
+    private final ServerRequest serverRequest;
+    private Route route;
 
     /* Lazy loaded stuff */
+    private Map<String, String> params;
+    private List<String> splat;
     private Session session;
     private String body;
     private Set<String> headers;
@@ -79,45 +80,62 @@ public final class Request {
         final HttpServletRequest request,
         final HttpServletResponse response) {
 
-        this.servletRequest = request;
-        this.response = new Response (response);
-
-        List<String> requestList = convertRouteToList (match.requestURI);
-        List<String> matchedList = match.entry.routeParts;
-
-        final Entry<Map<String, String>, List<String>> params = getParams (requestList, matchedList);
-        this.params = params.getKey ();
+        this (match, ServerRequest.of (request), ServerResponse.of (response));
     }
 
-    private Entry<Map<String, String>, List<String>> getParams (
-        final List<String> request, final List<String> matched) {
-
-        Map<String, String> params = new HashMap<> ();
-        List<String> splat = new ArrayList<> ();
+    /**
+     * Constructor for backends not based on servlets.
+     *
+     * @param match The route match.
+     * @param request The backend request.
+     * @param response The backend response.
+     */
+    public Request (
+        final RouteMatch match,
+        final ServerRequest request,
+        final ServerResponse response) {
 
-        int smaller = min (request.size (), matched.size ());
-        boolean sameLength = (request.size () == matched.size ());
+        this.serverRequest = request;
+        this.response = new Response (response);
+        this.segments = match.segments;
+        this.route = match.entry;
+    }
 
-        for (int ii = 0; ii < smaller; ii++) {
-            String matchedPart = matched.get (ii);
+    /**
+     * Binds the request to another route matching the same path. The filters and the handler
+     * of a request share it, route parameters are computed again for the new route.
+     *
+     * @param route Route matching this request path.
+     * @return This request.
+     */
+    public Request bind (final Route route) {
+        this.route = route;
+        params = null;
+        splat = null;
+        return this;
+    }
 
-            if (matchedPart.startsWith (":")) {
-                LOG.fine ("matchedPart: " + matchedPart + " = " + request.get (ii));
-                params.put (matchedPart.toLowerCase (), request.get (ii));
-            }
-            else if (matchedPart.equals ("*")) {
-                StringBuilder splatParam = new StringBuilder(request.get(ii));
-                if (!sameLength && (ii == (matched.size () - 1))) {
-                    for (int j = ii + 1; j < request.size (); j++) {
-                        splatParam.append ("/");
-                        splatParam.append (request.get (j));
-                    }
-                }
-                splat.add (splatParam.toString ());
-            }
+    /**
+     * Returns the index of the path segment holding a parameter (ignoring case). If a name is
+     * repeated the last one is used.
+     *
+     * @param param Parameter name (with or without ':').
+     * @return Segment index or -1 if the route does not have that parameter.
+     */
+    private int paramIndex (final String param) {
+        final int offset = param.startsWith (":")? 1 : 0;
+        final int length = param.length () - offset;
+        final List<String> matched = route.routeParts;
+
+        for (int ii = min (matched.size (), segments.size ()) - 1; ii >= 0; ii--) {
+            final String matchedPart = matched.get (ii);
+            if (matchedPart.startsWith (":")
+                && matchedPart.length () - 1 == length
+                && matchedPart.regionMatches (true, 1, param, offset, length))
+                return ii;
         }
 
-        return entry (unmodifiableMap (params), unmodifiableList (splat));
+        return -1;
     }
 
     /**
@@ -126,7 +144,7 @@ public final class Request {
      * @return
      */
     public StringBuffer requestUrl () {
-        return servletRequest.getRequestURL ();
+        return new StringBuffer (serverRequest.url ());
     }
 
     /**
@@ -135,21 +153,56 @@ public final class Request {
      * @return
      */
     public boolean forwarded () {
-        Object originalRequestURI =
-            servletRequest.getAttribute(RequestDispatcher.FORWARD_REQUEST_URI);
-
-        return originalRequestURI != null;
+        return serverRequest.forwarded ();
     }
 
     /**
-     * Returns the map containing all route params.
+     * Returns the map containing all route params. Keys are in lower case and include the ':'.
      *
      * @return A map containing all route params.
      */
     public Map<String, String> params () {
+        if (params == null) {
+            final Map<String, String> result = new HashMap<> ();
+            final List<String> matched = route.routeParts;
+
+            for (int ii = 0; ii < min (matched.size (), segments.size ()); ii++) {
+                final String matchedPart = matched.get (ii);
+                if (matchedPart.startsWith (":"))
+                    result.put (matchedPart.toLowerCase (), segments.get (ii));
+            }
+
+            params = unmodifiableMap (result);
+        }
         return params;
     }
 
+    /**
+     * Returns the values of the route wildcards ('*'). The last wildcard of a route ending in
+     * '*' holds the rest of the path.
+     * Example: ["a", "b/c"] for route '/&#42;/files/&#42;' and request '/a/files/b/c'.
+     *
+     * @return The wildcards values in order.
+     */
+    public List<String> splat () {
+        if (splat == null) {
+            final List<String> result = new ArrayList<> ();
+            final List<String> matched = route.routeParts;
+            final int size = segments.size ();
+            final int smaller = min (size, matched.size ());
+
+            for (int ii = 0; ii < smaller; ii++) {
+                if (matched.get (ii).equals ("*")) {
+                    final boolean last = size != matched.size () && ii == matched.size () - 1;
+                    result.add (last? segments.from (ii) : segments.get (ii));
+                }
+            }
+
+            splat = unmodifiableList (result);
+        }
+        return splat;
+    }
+
     /**
      * Returns the value of the provided route pattern parameter.
      * Example: parameter 'name' from the following pattern: (get '/hello/:name').
@@ -161,16 +214,48 @@ public final class Request {
         if (param == null)
             return null;
 
-        return param.startsWith (":")?
-            params.get (param.toLowerCase ()) :
-            params.get (":" + param.toLowerCase ());
+        final int index = paramIndex (param);
+        return index == -1? null : segments.get (index);
+    }
+
+    /**
+     * Returns a route parameter as an int. The value is parsed from the request path without
+     * copying it. Declare the parameter as int (ie: '/world/:id&lt;int&gt;') to make the route
+     * match only valid values.
+     *
+     * @param param The param.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the route does not have the parameter.
+     * @throws NumberFormatException If the value is not an int.
+     */
+    public int intParam (final String param) {
+        return segments.getInt (requiredParamIndex (param));
+    }
+
+    /**
+     * Returns a route parameter as a long. The value is parsed from the request path without
+     * copying it.
+     *
+     * @param param The param.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the route does not have the parameter.
+     * @throws NumberFormatException If the value is not a long.
+     */
+    public long longParam (final String param) {
+        return segments.getLong (requiredParamIndex (param));
+    }
+
+    private int requiredParamIndex (final String param) {
+        final int index = param == null? -1 : paramIndex (param);
+        require (index != -1, "Route parameter not found: " + param);
+        return index;
     }
 
     /**
      * @return request method e.g. GET, POST, PUT, ...
      */
     public String requestMethod () {
-        return servletRequest.getMethod ();
+        return serverRequest.method ();
     }
 
     /**
@@ -198,14 +283,14 @@ public final class Request {
      * @return the scheme (http/https).
      */
     public String scheme () {
-        return servletRequest.getScheme ();
+        return serverRequest.scheme ();
     }
 
     /**
      * @return the host (ie: example.com).
      */
     public String host () {
-        return servletRequest.getServerName ();
+        return serverRequest.host ();
     }
 
     /**
@@ -213,14 +298,14 @@ public final class Request {
      * @return the user-agent.
      */
     public String userAgent () {
-        return servletRequest.getHeader (USER_AGENT);
+        return serverRequest.header (USER_AGENT);
     }
 
     /**
      * @return the server port.
      */
     public int port () {
-        return servletRequest.getServerPort ();
+        return serverRequest.port ();
     }
 
     /**
@@ -229,28 +314,28 @@ public final class Request {
      * @return the path info.
      */
     public String pathInfo () {
-        return servletRequest.getPathInfo ();
+        return serverRequest.pathInfo ();
     }
 
     /**
      * @return the servlet path.
      */
     public String servletPath () {
-        return servletRequest.getServletPath ();
+        return serverRequest.servletPath ();
     }
 
     /**
      * @return the context path.
      */
     public String contextPath () {
-        return servletRequest.getContextPath ();
+        return serverRequest.contextPath ();
     }
 
     /**
      * @return the URL string.
      */
     public String url () {
-        return servletRequest.getRequestURL ().toString ();
+        return serverRequest.url ();
     }
 
     /**
@@ -258,7 +343,7 @@ public final class Request {
      * @return the content type of the body.
      */
     public String contentType () {
-        return servletRequest.getContentType ();
+        return serverRequest.contentType ();
     }
 
     /**
@@ -266,7 +351,7 @@ public final class Request {
      * @return the client's IP address.
      */
     public String ip () {
-        return servletRequest.getRemoteAddr ();
+        return serverRequest.remoteAddress ();
     }
 
     /**
@@ -274,7 +359,7 @@ public final class Request {
      */
     public String body () {
         if (body == null) {
-            try (InputStreamReader in = new InputStreamReader (servletRequest.getInputStream ())) {
+            try (InputStreamReader in = new InputStreamReader (serverRequest.inputStream ())) {
                 body = new Scanner (in).useDelimiter ("\\A").next ();
             }
             catch (Exception e) {
@@ -288,7 +373,7 @@ public final class Request {
      * @return the length of request.body.
      */
     public int contentLength () {
-        return servletRequest.getContentLength ();
+        return serverRequest.contentLength ();
     }
 
     /**
@@ -299,7 +384,7 @@ public final class Request {
      * @return the value of the provided queryParam.
      */
     public String queryParams (final String queryParam) {
-        return servletRequest.getParameter (queryParam);
+        return serverRequest.parameter (queryParam);
     }
 
     /**
@@ -310,26 +395,22 @@ public final class Request {
      * @return the value of the provided header.
      */
     public String headers (final String name) {
-        return servletRequest.getHeader (name);
+        return serverRequest.header (name);
     }
 
     /**
      * @return all query parameters.
      */
     public Set<String> queryParams () {
-        return servletRequest.getParameterMap ().keySet ();
+        return serverRequest.parameterNames ();
     }
 
     /**
      * @return all headers.
      */
     public Set<String> headers () {
-        if (headers == null) {
-            headers = new TreeSet<> ();
-            Enumeration<String> enumeration = servletRequest.getHeaderNames ();
-            while (enumeration.hasMoreElements ())
-                headers.add (enumeration.nextElement ());
-        }
+        if (headers == null)
+            headers = serverRequest.headerNames ();
         return headers;
     }
 
@@ -337,7 +418,7 @@ public final class Request {
      * @return the query string.
      */
     public String queryString () {
-        return servletRequest.getQueryString ();
+        return serverRequest.queryString ();
     }
 
     /**
@@ -347,7 +428,7 @@ public final class Request {
      * @param value The attribute value.
      */
     public void attribute (final String attribute, final Object value) {
-        servletRequest.setAttribute (attribute, value);
+        serverRequest.attribute (attribute, value);
     }
 
     /**
@@ -357,18 +438,14 @@ public final class Request {
      * @return the value for the provided attribute.
      */
     public Object attribute (final String name) {
-        return servletRequest.getAttribute (name);
+        return serverRequest.attribute (name);
     }
 
     /**
      * @return all attributes
      */
     public Set<String> attributes () {
-        Set<String> attrList = new HashSet<> ();
-        Enumeration<String> attributes = servletRequest.getAttributeNames ();
-        while (attributes.hasMoreElements ())
-            attrList.add (attributes.nextElement ());
-        return attrList;
+        return serverRequest.attributeNames ();
     }
 
     /**
@@ -379,7 +456,7 @@ public final class Request {
      */
     public Session session () {
         if (session == null)
-            session = new Session (servletRequest.getSession ());
+            session = new Session (serverRequest.session (true));
 
         return session;
     }
@@ -396,7 +473,7 @@ public final class Request {
      */
     public Session session (final boolean create) {
         if (session == null) {
-            HttpSession httpSession = servletRequest.getSession (create);
+            HttpSession httpSession = serverRequest.session (create);
             if (httpSession != null)
                 session = new Session (httpSession);
         }
@@ -409,7 +486,7 @@ public final class Request {
      */
     public Map<String, String> cookies () {
         Map<String, String> result = new HashMap<> ();
-        Cookie[] cookies = servletRequest.getCookies ();
+        Cookie[] cookies = serverRequest.cookies ();
         if (cookies != null)
             for (Cookie cookie : cookies)
                 result.put (cookie.getName (), cookie.getValue ());
@@ -418,7 +495,7 @@ public final class Request {
     }
 
     public Cookie[] getCookies () {
-        return servletRequest.getCookies ();
+        return serverRequest.cookies ();
     }
 
     /**
@@ -429,7 +506,7 @@ public final class Request {
      * @return cookie value or null if the cookie was not found
      */
     public String cookie (final String name) {
-        Cookie[] cookies = servletRequest.getCookies ();
+        Cookie[] cookies = serverRequest.cookies ();
         if (cookies != null)
             for (Cookie cookie : cookies)
                 if (cookie.getName ().equals (name))
@@ -442,14 +519,14 @@ public final class Request {
      * @return the part of this request's URL from the protocol name up to the query string in the first line of the HTTP request.
      */
     public String uri() {
-        return servletRequest.getRequestURI();
+        return serverRequest.uri ();
     }
 
     /**
      * @return Returns the name and version of the protocol the request uses
      */
     public String protocol() {
-        return servletRequest.getProtocol ();
+        return serverRequest.protocol ();
     }
 
     /*
@@ -474,7 +551,7 @@ public final class Request {
      * @return
      */
     public String referrer () {
-        return servletRequest.getHeader("referer");
+        return serverRequest.header ("referer");
     }
 
     /**
@@ -483,7 +560,7 @@ public final class Request {
      * @return
      */
     public boolean secure () {
-        return servletRequest.isSecure ();
+        return serverRequest.secure ();
     }
 
     public void cookie (
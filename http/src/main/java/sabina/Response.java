@@ -21,7 +21,8 @@ import static java.util.logging.Logger.getLogger;
 import java.io.IOException;
 import java.util.logging.Logger;
 import javax.servlet.http.Cookie;
-import javax.servlet.http.HttpServletResponse;
+
+import sabina.server.ServerResponse;
 
 /**
  * Provides functionality for modifying the response.
@@ -31,10 +32,11 @@ import javax.servlet.http.HttpServletResponse;
 public final class Response {
     private static final Logger LOG = getLogger (Response.class.getName ());
 
-    private final HttpServletResponse response;
+    private final ServerResponse response;
     private String body;
+    private boolean compress = true;
 
-    Response (final HttpServletResponse response) {
+    Response (final ServerResponse response) {
         this.response = response;
     }
 
@@ -44,7 +46,7 @@ public final class Response {
      * @param statusCode the status code
      */
     public void status (final int statusCode) {
-        response.setStatus (statusCode);
+        response.status (statusCode);
     }
 
     /**
@@ -53,7 +55,7 @@ public final class Response {
      * @param contentType the content type
      */
     public void type (final String contentType) {
-        response.setContentType (contentType);
+        response.contentType (contentType);
     }
 
     /**
@@ -74,6 +76,21 @@ public final class Response {
         return this.body;
     }
 
+    /**
+     * Enables or disables the compression of this response body (if compression is enabled in
+     * the server). It can be used in a 'before' filter to disable it for a group of routes.
+     *
+     * @param compress False to send the body uncompressed.
+     */
+    public void compress (final boolean compress) {
+        this.compress = compress;
+    }
+
+    /** @return False if the body compression has been disabled for this response. */
+    public boolean compress () {
+        return compress;
+    }
+
     public void addDateHeader (final String name, final long value) {
         response.addDateHeader (name, value);
     }
@@ -88,7 +105,7 @@ public final class Response {
             LOG.fine (format ("Redirecting to %s", location));
 
         try {
-            response.sendRedirect (location);
+            response.redirect (location);
         }
         catch (IOException e) {
             throw new RuntimeException ("Error redirecting to: " + location, e);
@@ -105,7 +122,7 @@ public final class Response {
         if (LOG.isLoggable (FINE))
             LOG.fine (format ("Redirecting (%s to %s)", httpStatusCode, location));
 
-        response.setStatus (httpStatusCode);
+        response.status (httpStatusCode);
         response.setHeader ("Location", location);
         response.setHeader ("Connection", "close");
         try {
@@ -15,15 +15,19 @@
 package sabina;
 
 import static java.lang.String.format;
+import static java.util.Collections.unmodifiableList;
 import static sabina.HttpMethod.AFTER;
 import static sabina.HttpMethod.BEFORE;
 import static sabina.Request.convertRouteToList;
 import static co.there4.bali.Checks.require;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import co.there4.bali.Checks;
 import sabina.Router.Handler;
+import sabina.route.ParamType;
+import sabina.route.RouteConditions;
 
 /**
  * A Route is built up by a path (for url-matching) and the implementation of the 'handle'
@@ -40,8 +44,32 @@ public final class Route {
     public final HttpMethod method;
     public final Handler handler;
 
+    /** Path parts without parameter types (ie: 'world' and ':id' for '/world/:id&lt;int&gt;'). */
     public final List<String> routeParts;
 
+    /** Type of each path part ({@link ParamType#ANY} for everything but typed parameters). */
+    public final List<ParamType> partTypes;
+
+    /** True if any parameter of the path has a type. */
+    public final boolean typed;
+
+    /** Host and header conditions (only for routes, filters can not have conditions). */
+    public final RouteConditions conditions;
+
+    /**
+     * True if matches of this route can be cached by request URI. Routes without parameters or
+     * wildcards are always cacheable, the others only if they are created with
+     * {@link #cached(HttpMethod, String, Handler)}.
+     * Routes with conditions are never cacheable.
+     */
+    public final boolean cacheable;
+
+    /**
+     * True if the handler never blocks. Backends reading requests in I/O threads run these
+     * routes there (if no filter applies) instead of dispatching them to a worker thread.
+     */
+    public final boolean nonBlocking;
+
     /**
      * Constructor.
      *
@@ -55,20 +83,106 @@ public final class Route {
     }
 
     /**
-     * Constructor.
+     * Creates a route whose matches are cached even if the path has parameters or wildcards (use
+     * it only for routes with a small set of requested URIs).
+     *
+     * @param method .
+     * @param path The route path which is used for matching. (e.g. /hello, users/:name).
+     * @param handler .
+     * @return The cached route.
+     */
+    public static Route cached (
+        final HttpMethod method, final String path, final Handler handler) {
+
+        return new Route (method, path, handler, true, RouteConditions.EMPTY, false);
+    }
+
+    /**
+     * Creates a route that only matches requests fulfilling some conditions. Routes with
+     * conditions are never cached.
+     *
+     * @param method .
+     * @param path The route path which is used for matching. (e.g. /hello, users/:name).
+     * @param conditions Host and headers required by the route.
+     * @param handler .
+     * @return The route with conditions.
+     */
+    public static Route conditional (
+        final HttpMethod method,
+        final String path,
+        final RouteConditions conditions,
+        final Handler handler) {
+
+        return new Route (method, path, handler, false, conditions, false);
+    }
+
+    /**
+     * Creates a route whose handler does not block (it can run in an I/O thread).
      *
      * @param method .
      * @param path The route path which is used for matching. (e.g. /hello, users/:name).
      * @param handler .
+     * @return The non blocking route.
+     */
+    public static Route nonBlocking (
+        final HttpMethod method, final String path, final Handler handler) {
+
+        return new Route (method, path, handler, false, RouteConditions.EMPTY, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param method .
+     * @param path The route path which is used for matching. (e.g. /hello, users/:name,
+     *  world/:id&lt;int&gt;). Parameter types are 'int', 'long' and 'uuid'.
+     * @param handler .
      */
     public Route (final HttpMethod method, final String path, final Handler handler) {
+        this (method, path, handler, false, RouteConditions.EMPTY, false);
+    }
+
+    /* Canonical constructor, the public ones and the factories name the optional features */
+    private Route (
+        final HttpMethod method,
+        final String path,
+        final Handler handler,
+        final boolean cached,
+        final RouteConditions conditions,
+        final boolean nonBlocking) {
+
         Checks.require (path != null);
         Checks.require (handler != null && method != null);
+        Checks.require (conditions != null);
+        Checks.require (
+            conditions.isEmpty () || !(method == AFTER || method == BEFORE),
+            "Filters can not have conditions");
 
         this.path = path;
         this.method = method;
         this.handler = handler;
-        this.routeParts = convertRouteToList (path);
+
+        final List<String> parts = convertRouteToList (path);
+        final List<ParamType> types = new ArrayList<> (parts.size ());
+        for (int ii = 0; ii < parts.size (); ii++) {
+            final String part = parts.get (ii);
+            final int typeStart = part.indexOf ('<');
+            if (part.startsWith (":") && typeStart != -1 && part.endsWith (">")) {
+                parts.set (ii, part.substring (0, typeStart));
+                types.add (ParamType.of (part.substring (typeStart + 1, part.length () - 1)));
+            }
+            else {
+                types.add (ParamType.ANY);
+            }
+        }
+
+        this.routeParts = unmodifiableList (parts);
+        this.partTypes = unmodifiableList (types);
+        this.typed = types.stream ().anyMatch (type -> type != ParamType.ANY);
+        this.conditions = conditions;
+        this.nonBlocking = nonBlocking;
+        this.cacheable = conditions.isEmpty () && (cached || !(path.endsWith ("*")
+            || routeParts.stream ().anyMatch (part -> part.startsWith (":") || part.equals ("*"))));
     }
 
     public boolean isFilter () {
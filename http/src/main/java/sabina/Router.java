@@ -22,6 +22,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 
 import co.there4.bali.Checks;
+import sabina.route.RouteConditions;
 import sabina.route.RouteMatcher;
 
 /**
@@ -42,6 +43,16 @@ public interface Router {
      */
     default void addRoute (Route action) { getMatcher ().processRoute (action); }
 
+    /**
+     * Removes the routes registered for a method and path. It can be called while the server is
+     * running (ie: to disable a feature).
+     *
+     * @return True if any route was removed.
+     */
+    default boolean removeRoute (HttpMethod m, String p) {
+        return getMatcher ().removeRoute (m, p);
+    }
+
     default void on (HttpMethod m, Handler h) {
         addRoute (new Route (m, h));
     }
@@ -50,6 +61,32 @@ public interface Router {
         addRoute (new Route (m, p, h));
     }
 
+    /**
+     * Adds a route that is only used if the request fulfills some conditions (ie: is addressed
+     * to a given host). See {@link RouteConditions}.
+     */
+    default void on (HttpMethod m, String p, RouteConditions c, Handler h) {
+        addRoute (Route.conditional (m, p, c, h));
+    }
+
+    /**
+     * Adds a route whose matches can be cached by request URI even if it has parameters. Only
+     * useful if the matcher cache is enabled ('sabina.matcher.cache' greater than zero).
+     */
+    default void cached (HttpMethod m, String p, Handler h) {
+        addRoute (Route.cached (m, p, h));
+    }
+
+    /**
+     * Adds a route whose handler never blocks (no I/O nor locks, ie: constant or computed
+     * bodies). The 'undertow-native' backend runs it in the I/O thread that read the request if
+     * no filter applies to it and compression is disabled. Its body must have a known size
+     * (strings, bytes or a Body): streamed bodies can not be written in the I/O thread.
+     */
+    default void nonBlocking (HttpMethod m, String p, Handler h) {
+        addRoute (Route.nonBlocking (m, p, h));
+    }
+
     default Handler wrap (VoidHandler h) {
         return request -> {
             h.accept (request);
@@ -35,13 +35,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import co.there4.bali.Configuration;
-import co.there4.bali.Strings;
 import org.slf4j.Logger;
 
 import sabina.route.RouteMatcher;
 import sabina.route.RouteMatcherFactory;
 import sabina.server.Backend;
 import sabina.server.BackendFactory;
+import sabina.server.DefaultHeaders;
+import sabina.server.Settings;
 
 /**
  * The main building block of a Sabina application is a set of routes. A route is
@@ -66,19 +67,8 @@ import sabina.server.BackendFactory;
 public final class Server implements Router {
     private static final Logger LOG = getLogger (Server.class);
 
-    /**
-     * 1. Application resource (basic defaults)
-     * 2. URL shared config accross different systems (architecture)
-     * 3. System properties (could be system wide)
-     * 4. Config file (installation configuration)
-     * 5. Program parameters (specified at application startup)
-     */
-    private static final Configuration CONFIGURATION = configuration ().load (
-        resource ("/sabina.properties"),
-        resource ("/application.properties"),
-        system ("sabina"),
-        file ("application.properties")
-    );
+    /** Loaded once for the server and the backends (see {@link Settings}). */
+    private static final Configuration CONFIGURATION = Settings.load ();
 
     private int port = configuration ().getInt ("sabina.port");
     private String bind = configuration ().getString ("sabina.bind");
@@ -92,9 +82,14 @@ public final class Server implements Router {
     private String filesLocation = configuration ().getString ("sabina.files.location");
 
     private String backend = configuration ().getString ("sabina.backend");
+    private String matcher = configuration ().getString ("sabina.matcher");
+    private int matcherCache = configuration ().getInt ("sabina.matcher.cache");
+    private String executor = configuration ().getString ("sabina.executor");
+
+    private final DefaultHeaders headers = new DefaultHeaders ();
 
     private Backend server;
-    RouteMatcher routeMatcher = RouteMatcherFactory.create ();
+    RouteMatcher routeMatcher = RouteMatcherFactory.create (matcher, matcherCache);
 
     public Server () {
         super ();
@@ -169,6 +164,45 @@ public final class Server implements Router {
         this.backend = backend;
     }
 
+    public String executor () {
+        return executor;
+    }
+
+    /**
+     * Sets the executor running route handlers: 'platform' (container threads) or 'virtual'
+     * (a virtual thread per handler if the JDK supports them). After start it would throw an
+     * exception.
+     *
+     * @param executor Executor type.
+     */
+    public void executor (String executor) {
+        if (isRunning ())
+            throw new IllegalArgumentException ("Can not change the executor of a running server");
+
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a header to all responses. It is set before running the filters, so filters and
+     * handlers can override it. It can be called while the server is running.
+     *
+     * @param name Header name.
+     * @param value Header value.
+     */
+    public void header (String name, String value) {
+        headers.add (name, value);
+    }
+
+    /**
+     * Adds the 'Date' header to all responses. Its value is formatted once per second (not on
+     * each request). Useful for backends not adding it (Netty).
+     *
+     * @param enabled True to add the 'Date' header.
+     */
+    public void dateHeader (boolean enabled) {
+        headers.date (enabled);
+    }
+
     /**
      * Set the connection to be secure, using the specified keystore and
      * truststore. This has to be called before any route mapping is done. You
@@ -229,7 +263,8 @@ public final class Server implements Router {
 
     public void start () {
         new Thread (() -> {
-            server = BackendFactory.create (backend, routeMatcher, hasMultipleHandlers ());
+            server = BackendFactory.create (
+                backend, routeMatcher, executor, headers, false);
             server.startUp (
                 bind,
                 port,
@@ -273,6 +308,7 @@ public final class Server implements Router {
         configuration.put ("sabina.backend", backend ().toUpperCase ());
         configuration.put ("sabina.bind", bind);
         configuration.put ("sabina.port", port);
+        configuration.put ("sabina.executor", executor);
         configuration.put ("sabina.keystore.file", keystoreFile == null? "" : keystoreFile);
         configuration.put ("sabina.truststore.file", truststoreFile == null? "" : truststoreFile);
         configuration.put ("sabina.resources.location", resourcesLocation == null? "" : resourcesLocation);
@@ -310,10 +346,6 @@ public final class Server implements Router {
         LOG.info ("Application started{}", filter (banner, configuration));
     }
 
-    private boolean hasMultipleHandlers () {
-        return !Strings.isEmpty (resourcesLocation) || !Strings.isEmpty (filesLocation);
-    }
-
     /**
      * Stops the Sabina server and clears all routes
      */
@@ -331,7 +363,7 @@ public final class Server implements Router {
         if (isRunning ())
             throw new IllegalStateException ("Can not reset running server");
 
-        routeMatcher = RouteMatcherFactory.create ();
+        routeMatcher = RouteMatcherFactory.create (matcher, matcherCache);
     }
 
     @Override public RouteMatcher getMatcher () { return routeMatcher; }
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed 'Accept' header. Headers are parsed once and kept by their exact value (clients send
+ * a handful of different values), and the quality of each media type asked to a header is
+ * computed once too. Choosing among the types produced by routes is a lookup for each type.
+ *
+ * @author jamming
+ */
+final class AcceptHeader {
+    /** Maximum number of different headers kept (others are parsed on each request). */
+    private static final int CACHE_SIZE = 256;
+    private static final Map<String, AcceptHeader> CACHE = new ConcurrentHashMap<> ();
+
+    /** Header of requests without 'Accept' (any type is accepted). */
+    static final AcceptHeader ANY = new AcceptHeader ("*/*");
+
+    /** Media range with its quality. */
+    private static final class Range {
+        final String type;
+        final float quality;
+
+        Range (String type, float quality) {
+            this.type = type;
+            this.quality = quality;
+        }
+
+        /** @return 2 for exact matches, 1 for 'type/*', 0 for '*' + '/*' and -1 otherwise. */
+        int specificity (String mediaType) {
+            if (type.equals ("*/*"))
+                return 0;
+            if (type.endsWith ("/*"))
+                return mediaType.regionMatches (0, type, 0, type.length () - 1)? 1 : -1;
+            return type.equals (mediaType)? 2 : -1;
+        }
+    }
+
+    private final List<Range> ranges = new ArrayList<> ();
+    private final Map<String, Float> qualities = new ConcurrentHashMap<> ();
+
+    private AcceptHeader (String header) {
+        for (String element : header.split (",")) {
+            String[] parts = element.split (";");
+            String type = parts[0].trim ().toLowerCase ();
+            if (type.isEmpty ())
+                continue;
+
+            float quality = 1F;
+            for (int ii = 1; ii < parts.length; ii++) {
+                String parameter = parts[ii].trim ();
+                if (parameter.startsWith ("q=") || parameter.startsWith ("Q=")) {
+                    try {
+                        quality = Float.parseFloat (parameter.substring (2));
+                    }
+                    catch (NumberFormatException e) {
+                        quality = -1F;
+                    }
+                }
+            }
+
+            if (quality >= 0F)
+                ranges.add (new Range (type, quality));
+        }
+    }
+
+    /**
+     * Returns the parsed header for a value.
+     *
+     * @param header Header value (null if the request does not have the header).
+     * @return The parsed header.
+     */
+    static AcceptHeader of (String header) {
+        if (header == null)
+            return ANY;
+
+        AcceptHeader result = CACHE.get (header);
+        if (result == null) {
+            result = new AcceptHeader (header);
+            if (CACHE.size () < CACHE_SIZE)
+                CACHE.putIfAbsent (header, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the quality of a media type: the one of the most specific range that matches it.
+     *
+     * @param mediaType Media type (lower case, without parameters).
+     * @return The quality (0 if the type is not acceptable).
+     */
+    float quality (String mediaType) {
+        Float result = qualities.get (mediaType);
+        if (result == null) {
+            result = computeQuality (mediaType);
+            qualities.putIfAbsent (mediaType, result);
+        }
+        return result;
+    }
+
+    private float computeQuality (String mediaType) {
+        int specificity = -1;
+        float result = 0F;
+        for (Range range : ranges) {
+            int rangeSpecificity = range.specificity (mediaType);
+            if (rangeSpecificity > specificity) {
+                specificity = rangeSpecificity;
+                result = range.quality;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import sabina.HttpMethod;
+import sabina.Request;
+import sabina.Route;
+
+/**
+ * Route matcher decorator that caches resolved targets and plans by HTTP method and request
+ * URI. Requests without a route, and routes that are not cacheable (see
+ * {@link Route#cacheable}), are always resolved by the decorated matcher.
+ *
+ * <p>Caches are replaced by empty ones when routes are added or removed. This is done after the
+ * decorated matcher is updated, so lookups that store results in the new caches always got
+ * them from the new routes.
+ *
+ * @author jamming
+ */
+public final class CachedRouteMatcher implements RouteMatcher {
+    private final RouteMatcher matcher;
+    private volatile MatchCache<RouteMatch> targets;
+    private volatile MatchCache<RoutePlan> plans;
+    /** Registered routes with conditions (guarded by 'this'). */
+    private final List<Route> conditionalRoutes = new ArrayList<> ();
+    /**
+     * Methods with routes that have conditions. Their plans depend on the request headers, not
+     * only on the URI, and they are not cached. It is computed again when the caches are renewed.
+     */
+    private volatile Set<HttpMethod> conditional = EnumSet.noneOf (HttpMethod.class);
+
+    CachedRouteMatcher (RouteMatcher matcher, int size) {
+        this.matcher = matcher;
+        this.targets = new MatchCache<> (size);
+        this.plans = new MatchCache<> (size);
+    }
+
+    /**
+     * @return The cache used for {@link #findTarget(HttpMethod, String)}.
+     */
+    public MatchCache<RouteMatch> targets () {
+        return targets;
+    }
+
+    /**
+     * @return The cache used for {@link #findPlan(HttpMethod, PathSegments, RequestHeaders)}.
+     */
+    public MatchCache<RoutePlan> plans () {
+        return plans;
+    }
+
+    @Override public synchronized void processRoute (Route target) {
+        matcher.processRoute (target);
+        if (!target.conditions.isEmpty ())
+            conditionalRoutes.add (target);
+        renew ();
+    }
+
+    @Override public synchronized boolean removeRoute (HttpMethod method, String path) {
+        boolean removed = matcher.removeRoute (method, path);
+        if (removed) {
+            conditionalRoutes.removeIf (
+                route -> route.method == method && route.path.equals (path));
+            renew ();
+        }
+        return removed;
+    }
+
+    private void renew () {
+        Set<HttpMethod> methods = EnumSet.noneOf (HttpMethod.class);
+        conditionalRoutes.forEach (route -> methods.add (route.method));
+        conditional = methods;
+
+        targets = targets.renew ();
+        plans = plans.renew ();
+    }
+
+    @Override public <T extends Exception> void processFault (
+        Class<T> fault, BiConsumer<? extends Exception, Request> handler) {
+        matcher.processFault (fault, handler);
+    }
+
+    @Override public RouteMatch findTarget (HttpMethod httpMethod, String path) {
+        MatchCache<RouteMatch> cache = targets;
+        RouteMatch match = cache.get (httpMethod, path);
+        if (match == null) {
+            match = matcher.findTarget (httpMethod, path);
+            if (match != null && match.entry.cacheable)
+                cache.put (httpMethod, path, match);
+        }
+        return match;
+    }
+
+    @Override public List<RouteMatch> findTargets (HttpMethod httpMethod, String path) {
+        return matcher.findTargets (httpMethod, path);
+    }
+
+    @Override public RoutePlan findPlan (
+        HttpMethod httpMethod, PathSegments path, RequestHeaders headers) {
+
+        if (conditional.contains (httpMethod))
+            return matcher.findPlan (httpMethod, path, headers);
+
+        MatchCache<RoutePlan> cache = plans;
+        RoutePlan plan = cache.get (httpMethod, path.path);
+        if (plan == null) {
+            plan = matcher.findPlan (httpMethod, path, headers);
+            if (plan.target != null && plan.target.cacheable)
+                cache.put (httpMethod, path.path, plan);
+        }
+        return plan;
+    }
+
+    @Override
+    public <T extends Exception> BiConsumer<T, Request> findHandler (Class<T> exceptionClass) {
+        return matcher.findHandler (exceptionClass);
+    }
+}
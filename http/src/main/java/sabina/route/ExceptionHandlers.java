@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2011 Per Wendel. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static java.util.Collections.emptyMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import sabina.Request;
+
+/**
+ * Exception handlers registry shared by route matchers.
+ *
+ * <p>The handler for each exception type (the one registered for the type or for its closest
+ * superclass) is resolved once and kept in a {@link ClassValue}. Registering a handler
+ * replaces the resolver, so lookups (done from request threads) do not take locks nor walk the
+ * class hierarchy after the first exception of each type.
+ *
+ * @author Per Wendel
+ */
+final class ExceptionHandlers {
+    /** Resolves handlers from an immutable map of exception classes and handlers. */
+    private static final class Resolver extends ClassValue<BiConsumer<?, Request>> {
+        private final
+        Map<Class<? extends Exception>, BiConsumer<? extends Exception, Request>> exceptionMap;
+
+        Resolver (
+            Map<Class<? extends Exception>, BiConsumer<? extends Exception, Request>> handlers) {
+
+            this.exceptionMap = handlers;
+        }
+
+        /** Walks the class and its superclasses until a mapped one is found (or null). */
+        @Override protected BiConsumer<?, Request> computeValue (Class<?> exceptionClass) {
+            for (Class<?> type = exceptionClass; type != null; type = type.getSuperclass ()) {
+                BiConsumer<? extends Exception, Request> handler = exceptionMap.get (type);
+                if (handler != null)
+                    return handler;
+            }
+
+            return null;
+        }
+    }
+
+    private volatile Resolver resolver = new Resolver (emptyMap ());
+
+    /**
+     * Maps the given handler to the provided exception type. If a handler was already
+     * registered to the same type, the handler is overwritten.
+     *
+     * @param fault Exception type.
+     * @param handler Handler to map to exception.
+     */
+    synchronized void put (
+        Class<? extends Exception> fault, BiConsumer<? extends Exception, Request> handler) {
+
+        Map<Class<? extends Exception>, BiConsumer<? extends Exception, Request>> map =
+            new HashMap<> (resolver.exceptionMap);
+        map.put (fault, handler);
+        resolver = new Resolver (map);
+    }
+
+    /**
+     * Returns the handler associated with the provided exception class or with its closest
+     * superclass.
+     *
+     * @param exceptionClass Type of exception
+     * @return Associated handler (null if there is none)
+     */
+    @SuppressWarnings ("unchecked")
+    <T extends Exception> BiConsumer<T, Request> find (Class<T> exceptionClass) {
+        return (BiConsumer<T, Request>)resolver.get (exceptionClass);
+    }
+}
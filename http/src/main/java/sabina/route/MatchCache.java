@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static co.there4.bali.Checks.require;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import sabina.HttpMethod;
+
+/**
+ * Bounded cache of match results keyed by HTTP method and request URI.
+ *
+ * <p>Reads do not take locks: they look up a concurrent map and flag the entry as referenced.
+ * When the cache is full, entries are evicted following the CLOCK algorithm (an approximation of
+ * LRU): entries are visited in insertion order, referenced ones get a second chance and the
+ * first not referenced since the last visit is removed.
+ *
+ * @param <T> Type of the cached results.
+ * @author jamming
+ */
+public final class MatchCache<T> {
+    private static final class Node<T> {
+        final HttpMethod method;
+        final String uri;
+        final T value;
+        volatile boolean referenced;
+
+        Node (HttpMethod method, String uri, T value) {
+            this.method = method;
+            this.uri = uri;
+            this.value = value;
+        }
+    }
+
+    private final int maximumSize;
+    private final Map<HttpMethod, Map<String, Node<T>>> entries = new EnumMap<> (HttpMethod.class);
+    private final Queue<Node<T>> clock = new ConcurrentLinkedQueue<> ();
+    private final AtomicInteger size = new AtomicInteger ();
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    MatchCache (int maximumSize) {
+        this (maximumSize, new LongAdder (), new LongAdder ());
+    }
+
+    private MatchCache (int maximumSize, LongAdder hits, LongAdder misses) {
+        require (maximumSize > 0, "Cache size must be greater than zero: " + maximumSize);
+        this.maximumSize = maximumSize;
+        this.hits = hits;
+        this.misses = misses;
+        for (HttpMethod method : HttpMethod.values ())
+            entries.put (method, new ConcurrentHashMap<> ());
+    }
+
+    T get (HttpMethod method, String uri) {
+        Node<T> node = entries.get (method).get (uri);
+        if (node == null) {
+            misses.increment ();
+            return null;
+        }
+
+        hits.increment ();
+        if (!node.referenced)
+            node.referenced = true;
+        return node.value;
+    }
+
+    void put (HttpMethod method, String uri, T value) {
+        Node<T> node = new Node<> (method, uri, value);
+        if (entries.get (method).putIfAbsent (uri, node) != null)
+            return;
+
+        clock.offer (node);
+        if (size.incrementAndGet () > maximumSize)
+            evict ();
+    }
+
+    /**
+     * Creates an empty cache with the same size that keeps counting hits and misses on this
+     * cache's counters. Used instead of clearing the cache, as a lookup started before
+     * clearing could store a stale result after it.
+     *
+     * @return The new, empty, cache.
+     */
+    MatchCache<T> renew () {
+        return new MatchCache<> (maximumSize, hits, misses);
+    }
+
+    private void evict () {
+        synchronized (clock) {
+            while (size.get () > maximumSize) {
+                Node<T> node = clock.poll ();
+                if (node == null)
+                    return;
+
+                if (node.referenced) {
+                    node.referenced = false;
+                    clock.offer (node);
+                }
+                else if (entries.get (node.method).remove (node.uri, node)) {
+                    size.decrementAndGet ();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of cached entries.
+     */
+    public int size () {
+        return size.get ();
+    }
+
+    /**
+     * @return The number of lookups that found a cached result.
+     */
+    public long hits () {
+        return hits.sum ();
+    }
+
+    /**
+     * @return The number of lookups that did not find a cached result.
+     */
+    public long misses () {
+        return misses.sum ();
+    }
+}
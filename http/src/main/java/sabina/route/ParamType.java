@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import java.util.List;
+
+import sabina.Route;
+
+/**
+ * Types of route parameters. A parameter type is declared after its name in the route path
+ * (ie: '/world/:id&lt;int&gt;'). Typed parameters are checked while matching: if the segment is
+ * not valid the route does not match and the request goes to the next route.
+ *
+ * @author jamming
+ */
+public enum ParamType {
+    /** Any value (static parts, wildcards and parameters without type). */
+    ANY,
+    /** Decimal number in the range of an int. */
+    INT,
+    /** Decimal number in the range of a long. */
+    LONG,
+    /** UUID in its canonical form (ie: '123e4567-e89b-12d3-a456-426655440000'). */
+    UUID;
+
+    private static final int UUID_LENGTH = 36;
+
+    /**
+     * Returns the type with a given name (as written in routes: 'int', 'long' or 'uuid').
+     *
+     * @param name Type name.
+     * @return The parameter type.
+     */
+    public static ParamType of (String name) {
+        for (ParamType type : values ())
+            if (type != ANY && type.name ().equalsIgnoreCase (name))
+                return type;
+
+        throw new IllegalArgumentException ("Unknown route parameter type: " + name);
+    }
+
+    /**
+     * Checks if a segment of the requested path is a valid value for this type. Segments past
+     * the end of the path are considered empty.
+     *
+     * @param path Requested path.
+     * @param index Segment index.
+     * @return True if the segment is valid.
+     */
+    public boolean matches (PathSegments path, int index) {
+        switch (this) {
+            case INT:
+                return path.isNumber (index, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            case LONG:
+                return path.isNumber (index, Long.MIN_VALUE, Long.MAX_VALUE);
+            case UUID:
+                return isUuid (path, index);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Checks all the typed parameters of a route against a requested path.
+     *
+     * @param route Route (its parts are supposed to match the path).
+     * @param path Requested path.
+     * @return True if all the typed parameters are valid.
+     */
+    static boolean matches (Route route, PathSegments path) {
+        if (!route.typed)
+            return true;
+
+        List<ParamType> types = route.partTypes;
+        for (int ii = 0; ii < types.size (); ii++)
+            if (!types.get (ii).matches (path, ii))
+                return false;
+
+        return true;
+    }
+
+    private static boolean isUuid (PathSegments path, int index) {
+        if (index >= path.size () || path.end (index) - path.start (index) != UUID_LENGTH)
+            return false;
+
+        int start = path.start (index);
+        for (int ii = 0; ii < UUID_LENGTH; ii++) {
+            char c = path.path.charAt (start + ii);
+            boolean valid = ii == 8 || ii == 13 || ii == 18 || ii == 23?
+                c == '-' : isHexDigit (c);
+            if (!valid)
+                return false;
+        }
+
+        return true;
+    }
+
+    /* Only ASCII digits ('Character.digit' also accepts other Unicode digits) */
+    private static boolean isHexDigit (char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
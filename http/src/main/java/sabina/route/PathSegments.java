@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static java.util.Arrays.copyOf;
+
+/**
+ * Request path split into segments. The path is scanned once and segments are kept as offsets
+ * over the original string, they are only copied when a segment value is requested.
+ *
+ * <p>Empty segments are skipped (ie: '/a//b/' has two segments: 'a' and 'b'), the same as
+ * {@link sabina.Request#convertRouteToList(String)}.
+ *
+ * @author jamming
+ */
+public final class PathSegments {
+    public final String path;
+
+    /** Start and end offsets of each segment: [start0, end0, start1, end1...]. */
+    private final int[] offsets;
+    private final int size;
+
+    private PathSegments (String path, int[] offsets, int size) {
+        this.path = path;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * Splits a path in segments.
+     *
+     * @param path The request path.
+     * @return The path segments.
+     */
+    public static PathSegments of (String path) {
+        int[] offsets = new int[16];
+        int size = 0;
+        int length = path.length ();
+
+        int start = 0;
+        while (start < length) {
+            int end = path.indexOf ('/', start);
+            if (end == -1)
+                end = length;
+
+            if (end > start) {
+                if (offsets.length == size * 2)
+                    offsets = copyOf (offsets, offsets.length * 2);
+                offsets[size * 2] = start;
+                offsets[size * 2 + 1] = end;
+                size++;
+            }
+
+            start = end + 1;
+        }
+
+        return new PathSegments (path, offsets, size);
+    }
+
+    /**
+     * @return The number of segments.
+     */
+    public int size () {
+        return size;
+    }
+
+    /**
+     * @return True if the path ends with '/'.
+     */
+    public boolean trailingSlash () {
+        return path.endsWith ("/");
+    }
+
+    /**
+     * Returns a segment value (the string is created on each call).
+     *
+     * @param index Segment index.
+     * @return The segment.
+     */
+    public String get (int index) {
+        return path.substring (start (index), end (index));
+    }
+
+    /**
+     * Returns the segments from the given one to the end joined by '/'.
+     *
+     * @param index First segment index.
+     * @return The segments starting at index.
+     */
+    public String from (int index) {
+        String tail = path.substring (start (index), end (size - 1));
+        if (!tail.contains ("//"))
+            return tail;
+
+        StringBuilder result = new StringBuilder (get (index));
+        for (int ii = index + 1; ii < size; ii++)
+            result.append ('/').append (get (ii));
+        return result.toString ();
+    }
+
+    /**
+     * Checks a segment value without copying it. Indexes past the last segment are considered
+     * empty segments.
+     *
+     * @param index Segment index.
+     * @param value Value to compare.
+     * @return True if the segment is equal to value.
+     */
+    public boolean matches (int index, String value) {
+        if (index >= size)
+            return value.isEmpty ();
+
+        int start = start (index);
+        int length = end (index) - start;
+        return value.length () == length && path.regionMatches (start, value, 0, length);
+    }
+
+    /**
+     * Parses a segment as a decimal int without copying it.
+     *
+     * @param index Segment index.
+     * @return The segment value.
+     * @throws NumberFormatException If the segment is not an int.
+     */
+    public int getInt (int index) {
+        return (int)getLong (index, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parses a segment as a decimal long without copying it.
+     *
+     * @param index Segment index.
+     * @return The segment value.
+     * @throws NumberFormatException If the segment is not a long.
+     */
+    public long getLong (int index) {
+        return getLong (index, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private long getLong (int index, long min, long max) {
+        if (!isNumber (index, min, max))
+            throw new NumberFormatException (
+                "For input string: \"" + (index < size? get (index) : "") + "\"");
+
+        int start = start (index);
+        int end = end (index);
+        boolean negative = path.charAt (start) == '-';
+
+        long result = 0;
+        for (int ii = negative? start + 1 : start; ii < end; ii++)
+            result = result * 10 - (path.charAt (ii) - '0');
+        return negative? result : -result;
+    }
+
+    /**
+     * Checks if a segment is a decimal number (with an optional '-' sign) in a range. The value
+     * is accumulated as a negative number to detect overflows (as {@link Long#parseLong(String)}
+     * does), min has to be negative and max positive.
+     */
+    boolean isNumber (int index, long min, long max) {
+        if (index >= size)
+            return false;
+
+        int start = start (index);
+        int end = end (index);
+        boolean negative = path.charAt (start) == '-';
+        if (negative && ++start == end)
+            return false;
+
+        long limit = negative? min : -max;
+        long limitBeforeMultiply = limit / 10;
+        long result = 0;
+        for (int ii = start; ii < end; ii++) {
+            int digit = path.charAt (ii) - '0';
+            if (digit < 0 || digit > 9 || result < limitBeforeMultiply)
+                return false;
+            result *= 10;
+            if (result < limit + digit)
+                return false;
+            result -= digit;
+        }
+        return true;
+    }
+
+    int start (int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException ("Segment " + index + " of " + size);
+        return offsets[index * 2];
+    }
+
+    int end (int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException ("Segment " + index + " of " + size);
+        return offsets[index * 2 + 1];
+    }
+
+    @Override public String toString () {
+        return path;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.route;
+
+/**
+ * Access to the headers of the request being matched. Used by the matchers to check the
+ * {@link RouteConditions} of routes without depending on the server backend.
+ *
+ * @author jamming
+ */
+@FunctionalInterface
+public interface RequestHeaders {
+    /** Headers of a request without headers (routes with conditions never match it). */
+    RequestHeaders NONE = name -> null;
+
+    /**
+     * Returns the value of a request header.
+     *
+     * @param name Header name (case insensitive).
+     * @return The header value or null if the request does not have it.
+     */
+    String get (String name);
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.route;
+
+import static co.there4.bali.Checks.require;
+import static java.util.Arrays.asList;
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sabina.Route;
+
+/**
+ * Request conditions a route requires besides its method and path: the host the request is
+ * addressed to and header values (ie: an API version header). Routes matching the requested
+ * path are checked in registration order and the first one whose conditions hold is used, so
+ * routes for the same path can be told apart without branching inside the handlers.
+ *
+ * <p>Routes can also declare the media types they produce. In that case the route preferred by
+ * the request 'Accept' header is used instead of the first one (see
+ * {@link #produces(String...)}).
+ *
+ * <p>Instances are immutable, each method returns a new instance with one more condition:
+ * <code>conditions ().host ("*.example.com").header ("X-Api-Version", "2")</code>.
+ *
+ * @author jamming
+ */
+public final class RouteConditions {
+    private static final String HOST = "host";
+    private static final String ACCEPT = "accept";
+
+    /** No conditions (the route matches any request). */
+    public static final RouteConditions EMPTY =
+        new RouteConditions (null, new String[0], new String[0], new String[0]);
+
+    /**
+     * @return Conditions to be added to a route (it starts with none).
+     */
+    public static RouteConditions conditions () {
+        return EMPTY;
+    }
+
+    /** Host pattern (null if any host is accepted). */
+    public final String host;
+
+    /** Suffix to check for '*.domain' host patterns (null for exact hosts). */
+    private final String hostSuffix;
+    /** Lower case name of exact hosts (used as index key by the trie matcher). */
+    final String hostKey;
+    private final String[] headerNames;
+    private final String[] headerValues;
+    private final String[] produces;
+
+    private RouteConditions (
+        String host, String[] headerNames, String[] headerValues, String[] produces) {
+
+        this.host = host;
+        this.hostSuffix = host != null && host.startsWith ("*.")? host.substring (1) : null;
+        this.hostKey = host != null && hostSuffix == null? host.toLowerCase () : null;
+        this.headerNames = headerNames;
+        this.headerValues = headerValues;
+        this.produces = produces;
+    }
+
+    /**
+     * Requires requests to be addressed to a host. The port is ignored and names are compared
+     * ignoring case.
+     *
+     * @param pattern Host name or '*.' followed by a domain to accept any of its subdomains.
+     * @return New conditions with the host added.
+     */
+    public RouteConditions host (String pattern) {
+        require (pattern != null && !pattern.isEmpty (), "Host pattern can not be empty");
+        return new RouteConditions (pattern, headerNames, headerValues, produces);
+    }
+
+    /**
+     * Requires requests to have a header with a given value (compared ignoring case).
+     *
+     * @param name Header name.
+     * @param value Expected header value.
+     * @return New conditions with the header added.
+     */
+    public RouteConditions header (String name, String value) {
+        require (name != null && value != null, "Header name and value are required");
+
+        int size = headerNames.length;
+        String[] names = copyOf (headerNames, size + 1);
+        String[] values = copyOf (headerValues, size + 1);
+        names[size] = name;
+        values[size] = value;
+        return new RouteConditions (host, names, values, produces);
+    }
+
+    /**
+     * Declares the media types the route produces (ie: 'application/json'). Among the routes
+     * matching a request, the one producing the type preferred by the 'Accept' header is used.
+     * Routes not declaring types are only used if no route produces an acceptable type.
+     *
+     * @param mediaTypes Media types without parameters.
+     * @return New conditions with the types added.
+     */
+    public RouteConditions produces (String... mediaTypes) {
+        require (mediaTypes != null && mediaTypes.length > 0, "Media types are required");
+
+        int size = produces.length;
+        String[] types = copyOf (produces, size + mediaTypes.length);
+        for (int ii = 0; ii < mediaTypes.length; ii++) {
+            require (mediaTypes[ii] != null && mediaTypes[ii].contains ("/"),
+                "Invalid media type: " + mediaTypes[ii]);
+            types[size + ii] = mediaTypes[ii].trim ().toLowerCase ();
+        }
+        return new RouteConditions (host, headerNames, headerValues, types);
+    }
+
+    /**
+     * @return Required headers by name.
+     */
+    public Map<String, String> headers () {
+        Map<String, String> result = new LinkedHashMap<> ();
+        for (int ii = 0; ii < headerNames.length; ii++)
+            result.put (headerNames[ii], headerValues[ii]);
+        return unmodifiableMap (result);
+    }
+
+    /**
+     * @return Media types produced by the route (empty if it does not declare them).
+     */
+    public List<String> produces () {
+        return unmodifiableList (asList (produces));
+    }
+
+    /**
+     * @return True if there are no conditions.
+     */
+    public boolean isEmpty () {
+        return host == null && headerNames.length == 0 && produces.length == 0;
+    }
+
+    /**
+     * Checks the host and header conditions against a request (produced types are checked by
+     * {@link #preference(RequestHeaders)}).
+     *
+     * @param headers Request headers.
+     * @return True if the request fulfills all the conditions.
+     */
+    public boolean matches (RequestHeaders headers) {
+        if (host != null && !matchesHost (headers.get (HOST)))
+            return false;
+
+        for (int ii = 0; ii < headerNames.length; ii++)
+            if (!headerValues[ii].equalsIgnoreCase (headers.get (headerNames[ii])))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Returns the media type to send for a request: the produced type with the highest quality
+     * in the request 'Accept' header (the first declared one on ties).
+     *
+     * @param headers Request headers.
+     * @return The media type or null if the route does not declare types or none is accepted.
+     */
+    public String negotiate (RequestHeaders headers) {
+        if (produces.length == 0)
+            return null;
+
+        AcceptHeader accept = AcceptHeader.of (headers.get (ACCEPT));
+        String result = null;
+        float best = 0F;
+        for (String type : produces) {
+            float quality = accept.quality (type);
+            if (quality > best) {
+                best = quality;
+                result = type;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns how much a request prefers this route: -1 if its conditions do not hold or none
+     * of its types is acceptable, 0 if it does not declare types and the quality of its best
+     * type otherwise.
+     *
+     * @param headers Request headers.
+     * @return The route preference for the request.
+     */
+    float preference (RequestHeaders headers) {
+        if (isEmpty ())
+            return 0F;
+        if (!matches (headers))
+            return -1F;
+        if (produces.length == 0)
+            return 0F;
+
+        AcceptHeader accept = AcceptHeader.of (headers.get (ACCEPT));
+        float result = -1F;
+        for (String type : produces) {
+            float quality = accept.quality (type);
+            if (quality > 0F && quality > result)
+                result = quality;
+        }
+        return result;
+    }
+
+    /**
+     * Selects the route for a request among the ones matching its path: the one the request
+     * prefers (see {@link #preference(RequestHeaders)}). Ties are resolved by registration
+     * order.
+     *
+     * @param routes Routes matching the path, in registration order.
+     * @param headers Request headers.
+     * @return The selected route or null if no route can handle the request.
+     */
+    static Route select (List<Route> routes, RequestHeaders headers) {
+        Route result = null;
+        float best = -1F;
+
+        for (Route route : routes) {
+            float preference = route.conditions.preference (headers);
+            if (preference > best) {
+                result = route;
+                best = preference;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the host a request is addressed to in the form used by {@link #hostKey}.
+     *
+     * @param headers Request headers.
+     * @return Lower case host name without port or null if the request has no 'Host' header.
+     */
+    static String hostKey (RequestHeaders headers) {
+        String requestHost = headers.get (HOST);
+        return requestHost == null?
+            null : requestHost.substring (0, hostLength (requestHost)).toLowerCase ();
+    }
+
+    /* Port is skipped (IPv6 addresses are enclosed in brackets and contain ':') */
+    private static int hostLength (String requestHost) {
+        int colon = requestHost.lastIndexOf (':');
+        return colon > requestHost.lastIndexOf (']')? colon : requestHost.length ();
+    }
+
+    private boolean matchesHost (String requestHost) {
+        if (requestHost == null)
+            return false;
+
+        int length = hostLength (requestHost);
+
+        if (hostSuffix == null)
+            return length == host.length () && requestHost.regionMatches (true, 0, host, 0, length);
+
+        int suffixLength = hostSuffix.length ();
+        return length > suffixLength
+            && requestHost.regionMatches (true, length - suffixLength, hostSuffix, 0, suffixLength);
+    }
+
+    @Override public String toString () {
+        return "host: " + host + ", headers: " + headers () + ", produces: " + produces ();
+    }
+}
@@ -22,9 +22,15 @@ import sabina.Route;
 public final class RouteMatch {
     public final Route entry;
     public final String requestURI;
+    public final PathSegments segments;
 
     public RouteMatch (Route entry, String path) {
+        this (entry, PathSegments.of (path));
+    }
+
+    public RouteMatch (Route entry, PathSegments segments) {
         this.entry = entry;
-        this.requestURI = path;
+        this.requestURI = segments.path;
+        this.segments = segments;
     }
 }
@@ -23,7 +23,8 @@ import sabina.Route;
 import sabina.HttpMethod;
 
 /**
- * Route matcher
+ * Route matcher. Implementations must support adding and removing routes while requests are
+ * being served: lookups are called concurrently from request threads.
  *
  * @author Per Wendel
  */
@@ -35,11 +36,24 @@ public interface RouteMatcher {
      */
     void processRoute (Route target);
 
+    /**
+     * Removes the routes (or filters) registered for a method and path. Requests being
+     * processed keep using the routes they matched, later requests will not see them.
+     *
+     * @param method Method of the routes to remove.
+     * @param path Path of the routes to remove (as it was registered).
+     *
+     * @return True if any route was removed.
+     */
+    boolean removeRoute (HttpMethod method, String path);
+
     <T extends Exception> void processFault (
         Class<T> fault, BiConsumer<? extends Exception, Request> handler);
 
     /**
-     * Finds the target route for the requested route path and accept type
+     * Finds the target route for the requested route path. It is selected as for a request
+     * without headers: routes with host or header conditions never match, routes declaring
+     * produced types accept any type and are preferred over routes without conditions.
      *
      * @param httpMethod .
      * @param path .
@@ -48,7 +62,35 @@ public interface RouteMatcher {
      */
     RouteMatch findTarget (HttpMethod httpMethod, String path);
 
+    /**
+     * Finds all routes matching the requested path (routes with conditions included).
+     *
+     * @param httpMethod .
+     * @param path .
+     *
+     * @return The matching routes in registration order.
+     */
     List<RouteMatch> findTargets (HttpMethod httpMethod, String path);
 
+    /**
+     * Finds the route for the requested path along with the filters to run before and after
+     * it. Plans are cached by route, so the filter chains are not computed on each request.
+     *
+     * @param httpMethod .
+     * @param path .
+     * @param headers Request headers (to check the conditions of the routes).
+     *
+     * @return The execution plan (its target is null if no route matches).
+     */
+    RoutePlan findPlan (HttpMethod httpMethod, PathSegments path, RequestHeaders headers);
+
+    default RoutePlan findPlan (HttpMethod httpMethod, PathSegments path) {
+        return findPlan (httpMethod, path, RequestHeaders.NONE);
+    }
+
+    default RoutePlan findPlan (HttpMethod httpMethod, String path) {
+        return findPlan (httpMethod, PathSegments.of (path));
+    }
+
     <T extends Exception> BiConsumer<T, Request> findHandler(Class<T> exceptionClass);
 }
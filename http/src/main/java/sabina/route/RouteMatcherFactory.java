@@ -27,4 +27,36 @@ public final class RouteMatcherFactory {
     public static synchronized RouteMatcher create () {
         return new SimpleRouteMatcher ();
     }
+
+    /**
+     * Creates a route matcher of the given type.
+     *
+     * @param matcher Matcher type: 'simple' (linear scan) or 'trie' (index by path segments).
+     * @return The route matcher.
+     * @throws IllegalArgumentException If the matcher type is not known.
+     */
+    public static synchronized RouteMatcher create (String matcher) {
+        switch (matcher) {
+            case "simple":
+                return new SimpleRouteMatcher ();
+            case "trie":
+                return new TrieRouteMatcher ();
+            default:
+                throw new IllegalArgumentException (
+                    "Unknown route matcher: '" + matcher + "' (valid values: simple, trie)");
+        }
+    }
+
+    /**
+     * Creates a route matcher of the given type with a cache of resolved matches.
+     *
+     * @param matcher Matcher type: 'simple' (linear scan) or 'trie' (index by path segments).
+     * @param cacheSize Maximum number of cached matches (by method and URI), zero disables it.
+     * @return The route matcher.
+     */
+    public static synchronized RouteMatcher create (String matcher, int cacheSize) {
+        return cacheSize > 0?
+            new CachedRouteMatcher (create (matcher), cacheSize) :
+            create (matcher);
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static java.util.Collections.unmodifiableList;
+import static sabina.Route.ALL_PATHS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sabina.Route;
+
+/**
+ * Execution plan for a request: the before filters, the route handling it and the after
+ * filters, in the order they have to be run.
+ *
+ * <p>Plans are built once per route (the route template, not the requested path) and shared by
+ * all the requests dispatched to that route. Filters that can be decided from the template are
+ * resolved when the plan is built, the others (ie: '/users/admin' for route '/users/:id') are
+ * checked against the requested path.
+ *
+ * @author jamming
+ */
+public final class RoutePlan {
+    /** How a filter relates to all the paths matched by a route. */
+    private enum Relation { ALWAYS, NEVER, DEPENDS }
+
+    /** Filters of one stage (before or after) of the plan. */
+    private static final class Chain {
+        final List<Route> filters = new ArrayList<> ();
+        final List<Boolean> checks = new ArrayList<> ();
+        final List<Route> resolved;
+
+        Chain (Route target, List<Route> candidates) {
+            boolean unresolved = false;
+            for (Route filter : candidates) {
+                Relation relation = relate (filter, target);
+                if (relation != Relation.NEVER) {
+                    filters.add (filter);
+                    checks.add (relation == Relation.DEPENDS);
+                    unresolved |= relation == Relation.DEPENDS;
+                }
+            }
+            resolved = unresolved? null : unmodifiableList (filters);
+        }
+
+        List<Route> filters (PathSegments path) {
+            if (resolved != null)
+                return resolved;
+
+            List<Route> result = new ArrayList<> (filters.size ());
+            for (int ii = 0; ii < filters.size (); ii++) {
+                Route filter = filters.get (ii);
+                if (!checks.get (ii) || SimpleRouteMatcher.matches (filter, path))
+                    result.add (filter);
+            }
+            return result;
+        }
+    }
+
+    /** Route handling the request (null if there is no route for the request). */
+    public final Route target;
+
+    private final Chain before;
+    private final Chain after;
+
+    RoutePlan (Route target, List<Route> beforeFilters, List<Route> afterFilters) {
+        this.target = target;
+        this.before = new Chain (target, beforeFilters);
+        this.after = new Chain (target, afterFilters);
+    }
+
+    /**
+     * Returns the before filters to run for the requested path.
+     *
+     * @param path Requested path (it has to be matched by the target route).
+     * @return The before filters, in order.
+     */
+    public List<Route> before (PathSegments path) {
+        return before.filters (path);
+    }
+
+    /**
+     * Returns the after filters to run for the requested path.
+     *
+     * @param path Requested path (it has to be matched by the target route).
+     * @return The after filters, in order.
+     */
+    public List<Route> after (PathSegments path) {
+        return after.filters (path);
+    }
+
+    /**
+     * Checks if a filter matches all the paths matched by a route. It follows the rules of
+     * {@link SimpleRouteMatcher#matches(Route, PathSegments)} taking the route's params and
+     * wildcards as unknown segments.
+     */
+    private static Relation relate (Route filter, Route target) {
+        if (filter.path.equals (ALL_PATHS))
+            return Relation.ALWAYS;
+
+        // Typed parameters depend on the requested values
+        Relation relation = relateParts (filter, target);
+        return relation == Relation.ALWAYS && filter.typed? Relation.DEPENDS : relation;
+    }
+
+    private static Relation relateParts (Route filter, Route target) {
+        // Paths matched by a route ending in wildcard have unknown length or trailing slash
+        if (target == null || target.path.endsWith ("*"))
+            return Relation.DEPENDS;
+
+        List<String> segments = new ArrayList<> (target.routeParts);
+        boolean trailingSlash = target.path.endsWith ("/");
+        boolean filterWildcard = filter.path.endsWith ("*");
+
+        if (!filterWildcard && trailingSlash != filter.path.endsWith ("/"))
+            return Relation.NEVER;
+
+        int filterSize = filter.routeParts.size ();
+        int size = segments.size ();
+
+        if (filterSize == size)
+            return relate (filter.routeParts, segments);
+
+        if (!filterWildcard)
+            return Relation.NEVER;
+
+        if (size == filterSize - 1 && trailingSlash) {
+            segments.add ("");
+            return relate (filter.routeParts, segments);
+        }
+
+        return filterSize < size? relate (filter.routeParts, segments) : Relation.NEVER;
+    }
+
+    private static Relation relate (List<String> filterParts, List<String> segments) {
+        Relation result = Relation.ALWAYS;
+
+        for (int ii = 0; ii < filterParts.size (); ii++) {
+            String filterPart = filterParts.get (ii);
+            if (filterPart.startsWith (":") || filterPart.equals ("*"))
+                continue;
+
+            String segment = segments.get (ii);
+            if (segment.startsWith (":") || segment.equals ("*"))
+                result = Relation.DEPENDS;
+            else if (!filterPart.equals (segment))
+                return Relation.NEVER;
+        }
+
+        return result;
+    }
+}
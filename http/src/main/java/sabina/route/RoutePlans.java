@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static java.util.Collections.emptyList;
+import static sabina.HttpMethod.AFTER;
+import static sabina.HttpMethod.BEFORE;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import sabina.HttpMethod;
+import sabina.Route;
+
+/**
+ * Cache of execution plans by target route. Each instance belongs to one set of routes, when
+ * routes change matchers replace it instead of clearing it (a plan built from the old routes
+ * could be stored after clearing the cache otherwise).
+ *
+ * @author jamming
+ */
+final class RoutePlans {
+    private final Map<Route, RoutePlan> plans = new ConcurrentHashMap<> ();
+
+    /** Plan for requests without route (all filters are checked against the path). */
+    private volatile RoutePlan missing;
+
+    /**
+     * Returns the plan for a target route, building it if it is not cached.
+     *
+     * @param target Route handling the request (null if none matched).
+     * @param routes Registered routes by method (only filters are used).
+     * @return The execution plan.
+     */
+    RoutePlan find (Route target, Map<HttpMethod, List<Route>> routes) {
+        if (target == null) {
+            RoutePlan plan = missing;
+            return plan != null? plan : (missing = create (null, routes));
+        }
+
+        return plans.computeIfAbsent (target, it -> create (it, routes));
+    }
+
+    private static RoutePlan create (Route target, Map<HttpMethod, List<Route>> routes) {
+        return new RoutePlan (
+            target,
+            routes.getOrDefault (BEFORE, emptyList ()),
+            routes.getOrDefault (AFTER, emptyList ())
+        );
+    }
+}
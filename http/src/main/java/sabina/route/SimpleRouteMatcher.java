@@ -16,7 +16,6 @@ package sabina.route;
 
 import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.toList;
-import static sabina.Request.convertRouteToList;
 import static sabina.Route.*;
 
 import java.util.*;
@@ -29,28 +28,56 @@ import sabina.Route;
 /**
  * Simple route matcher that is supposed to work exactly as Sinatra's
  *
+ * <p>Routes are kept in a snapshot that is copied and replaced when routes are added or
+ * removed. Lookups read the current snapshot without locking.
+ *
  * @author Per Wendel
  */
 final class SimpleRouteMatcher implements RouteMatcher {
 //    private static final Logger LOG = getLogger (SimpleRouteMatcher.class.getName ());
 
-    private final Map<HttpMethod, List<Route>> routeMap = new HashMap<> ();
+    /** Registered routes and the plans built from them. It is replaced when routes change. */
+    private static final class Snapshot {
+        final Map<HttpMethod, List<Route>> routeMap;
+        final RoutePlans plans = new RoutePlans ();
+
+        Snapshot (Map<HttpMethod, List<Route>> routeMap) {
+            this.routeMap = routeMap;
+        }
+
+        /** @return A mutable copy of the routes to build the next snapshot. */
+        Map<HttpMethod, List<Route>> copy () {
+            Map<HttpMethod, List<Route>> result = new EnumMap<> (HttpMethod.class);
+            routeMap.forEach ((method, routes) -> result.put (method, new ArrayList<> (routes)));
+            return result;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot (new EnumMap<> (HttpMethod.class));
 
-    /** Holds a map of Exception classes and associated handlers. */
-    private final
-    Map<Class<? extends Exception>, BiConsumer<? extends Exception, Request>> exceptionMap =
-        new HashMap<> ();
+    private final ExceptionHandlers exceptionHandlers = new ExceptionHandlers ();
 
     /**
      * Parse and validates a route and adds it
      *
      * @param target the invocation target
      */
-    @Override public void processRoute (Route target) {
-        HttpMethod method = target.method;
-        if (!routeMap.containsKey (method))
-            routeMap.put (method, new ArrayList<> ());
-        routeMap.get (method).add (target);
+    @Override public synchronized void processRoute (Route target) {
+        Map<HttpMethod, List<Route>> routeMap = snapshot.copy ();
+        routeMap.computeIfAbsent (target.method, k -> new ArrayList<> ()).add (target);
+        snapshot = new Snapshot (routeMap);
+    }
+
+    @Override public synchronized boolean removeRoute (HttpMethod method, String path) {
+        Map<HttpMethod, List<Route>> routeMap = snapshot.copy ();
+        List<Route> routes = routeMap.get (method);
+        if (routes == null || !routes.removeIf (route -> route.path.equals (path)))
+            return false;
+
+        if (routes.isEmpty ())
+            routeMap.remove (method);
+        snapshot = new Snapshot (routeMap);
+        return true;
     }
 
     /**
@@ -62,10 +89,11 @@ final class SimpleRouteMatcher implements RouteMatcher {
      * @return the target
      */
     @Override public RouteMatch findTarget (HttpMethod httpMethod, String path) {
-
-        final List<Route> routeEntries = this.findTargetsForRequestedRoute (httpMethod, path);
-        final Route entry = findTargetWithGivenAcceptType (routeEntries);
-        return entry != null? new RouteMatch (entry, path) : null;
+        final PathSegments segments = PathSegments.of (path);
+        final List<Route> routeEntries =
+            findTargetsForRequestedRoute (snapshot.routeMap, httpMethod, segments);
+        final Route entry = findTargetWithGivenAcceptType (routeEntries, RequestHeaders.NONE);
+        return entry != null? new RouteMatch (entry, segments) : null;
     }
 
     /**
@@ -78,53 +106,36 @@ final class SimpleRouteMatcher implements RouteMatcher {
      */
     @Override public List<RouteMatch> findTargets (final HttpMethod httpMethod, final String path) {
         final List<RouteMatch> matchSet = new ArrayList<> ();
-        final List<Route> routeEntries = findTargetsForRequestedRoute (httpMethod, path);
+        final PathSegments segments = PathSegments.of (path);
+        final List<Route> routeEntries =
+            findTargetsForRequestedRoute (snapshot.routeMap, httpMethod, segments);
 
         for (Route routeEntry : routeEntries) {
-            matchSet.add (new RouteMatch (routeEntry, path));
+            matchSet.add (new RouteMatch (routeEntry, segments));
         }
 
         return matchSet;
     }
 
+    @Override public RoutePlan findPlan (
+        final HttpMethod httpMethod, final PathSegments path, final RequestHeaders headers) {
+
+        final Snapshot routes = snapshot;
+        final List<Route> routeEntries =
+            findTargetsForRequestedRoute (routes.routeMap, httpMethod, path);
+        final Route target = findTargetWithGivenAcceptType (routeEntries, headers);
+        return routes.plans.find (target, routes.routeMap);
+    }
+
     /**
      * Returns the handler associated with the provided exception class
      *
      * @param exceptionClass Type of exception
      * @return Associated handler
      */
-    @SuppressWarnings ("unchecked")
     @Override
     public <T extends Exception> BiConsumer<T, Request> findHandler(Class<T> exceptionClass) {
-        // If the exception map does not contain the provided exception class, it might
-        // still be that a superclass of the exception class is.
-        if (!exceptionMap.containsKey(exceptionClass)) {
-
-            Class<? extends Exception> superclass =
-                (Class<? extends Exception>)exceptionClass.getSuperclass();
-            do {
-                // Is the superclass mapped?
-                if (exceptionMap.containsKey(superclass)) {
-                    // Use the handler for the mapped superclass, and cache handler
-                    // for this exception class
-                    BiConsumer<T, Request> handler =
-                        (BiConsumer<T, Request>)exceptionMap.get(superclass);
-                    exceptionMap.put(exceptionClass, handler);
-                    return handler;
-                }
-
-                // Iteratively walk through the exception class's superclasses
-                superclass = (Class<? extends Exception>)superclass.getSuperclass();
-            } while (superclass != null);
-
-            // No handler found either for the superclasses of the exception class
-            // We cache the null value to prevent future
-            exceptionMap.put(exceptionClass, null);
-            return null;
-        }
-
-        // Direct map
-        return (BiConsumer<T, Request>)exceptionMap.get (exceptionClass);
+        return exceptionHandlers.find (exceptionClass);
     }
 
     /**
@@ -135,52 +146,54 @@ final class SimpleRouteMatcher implements RouteMatcher {
      */
     @Override public <T extends Exception> void processFault (
         Class<T> fault, BiConsumer<? extends Exception, Request> handler) {
-        exceptionMap.put(fault, handler);
+        exceptionHandlers.put (fault, handler);
     }
 
-    private List<Route> findTargetsForRequestedRoute (
-        HttpMethod httpMethod, String path) {
+    private static List<Route> findTargetsForRequestedRoute (
+        Map<HttpMethod, List<Route>> routeMap, HttpMethod httpMethod, PathSegments path) {
 
-        return routeMap.containsKey (httpMethod)?
-            routeMap.get(httpMethod).stream ()
+        final List<Route> routes = routeMap.get (httpMethod);
+        return routes != null?
+            routes.stream ()
                 .filter (entry -> matches (entry, path))
                 .collect (toList ()) :
             emptyList ();
     }
 
-    // TODO: I believe this feature has impacted performance. Optimization?
-    private Route findTargetWithGivenAcceptType (final List<Route> routeMatches) {
-        if (routeMatches.size () > 0)
-            return routeMatches.get (0);
+    /**
+     * Returns the route preferred by the request (by its conditions and 'Accept' header) among
+     * the ones matching the path. See {@link RouteConditions#select(List, RequestHeaders)}.
+     */
+    private static Route findTargetWithGivenAcceptType (
+        final List<Route> routeMatches, final RequestHeaders headers) {
 
-        return null;
+        return RouteConditions.select (routeMatches, headers);
     }
 
-    public boolean matches (Route route, String path) {
-        return (route.isFilter () && route.path.equals (ALL_PATHS)) || matchPath (route, path);
+    static boolean matches (Route route, PathSegments path) {
+        return (route.isFilter () && route.path.equals (ALL_PATHS))
+            || (matchPath (route, path) && ParamType.matches (route, path));
     }
 
-    private boolean matchPath (Route route, String path) {
-        if (!route.path.endsWith ("*") && ((path.endsWith ("/") && !route.path.endsWith ("/"))
-            || (route.path.endsWith ("/") && !path.endsWith ("/")))) {
+    private static boolean matchPath (Route route, PathSegments path) {
+        final boolean trailingSlash = path.trailingSlash ();
+        if (!route.path.endsWith ("*") && ((trailingSlash && !route.path.endsWith ("/"))
+            || (route.path.endsWith ("/") && !trailingSlash))) {
             // One and not both ends with slash
             return false;
         }
-        if (route.path.equals (path)) {
+        if (route.path.equals (path.path)) {
             // Paths are the same
             return true;
         }
 
-        // check params
-        List<String> pathList = convertRouteToList (path);
-
+        // check params (segments past the end of the path are taken as empty)
         int thisPathSize = route.routeParts.size ();
-        int pathSize = pathList.size ();
+        int pathSize = path.size ();
 
         if (thisPathSize == pathSize) {
             for (int i = 0; i < thisPathSize; i++) {
                 String thisPathPart = route.routeParts.get (i);
-                String pathPart = pathList.get (i);
 
                 if ((i == thisPathSize - 1) && (thisPathPart.equals ("*") && route.path
                     .endsWith ("*"))) {
@@ -189,7 +202,7 @@ final class SimpleRouteMatcher implements RouteMatcher {
                 }
 
                 if ((!thisPathPart.startsWith (":"))
-                    && !thisPathPart.equals (pathPart)
+                    && !path.matches (i, thisPathPart)
                     && !thisPathPart.equals ("*")) {
                     return false;
                 }
@@ -201,24 +214,21 @@ final class SimpleRouteMatcher implements RouteMatcher {
             // Number of "path parts" not the same
             // check wild card:
             if (route.path.endsWith ("*")) {
-                if (pathSize == (thisPathSize - 1) && (path.endsWith ("/"))) {
+                if (pathSize == (thisPathSize - 1) && trailingSlash) {
                     // Hack for making wildcards work with trailing slash
-                    pathList.add ("");
-                    pathList.add ("");
                     pathSize += 2;
                 }
 
                 if (thisPathSize < pathSize) {
                     for (int i = 0; i < thisPathSize; i++) {
                         String thisPathPart = route.routeParts.get (i);
-                        String pathPart = pathList.get (i);
                         if (thisPathPart.equals ("*") && (i == thisPathSize - 1) && route.path
                             .endsWith ("*")) {
                             // wildcard match
                             return true;
                         }
                         if (!thisPathPart.startsWith (":")
-                            && !thisPathPart.equals (pathPart)
+                            && !path.matches (i, thisPathPart)
                             && !thisPathPart.equals ("*")) {
                             return false;
                         }
@@ -0,0 +1,350 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static java.util.Collections.emptyList;
+import static java.util.Comparator.comparingInt;
+import static sabina.Route.ALL_PATHS;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import sabina.HttpMethod;
+import sabina.Request;
+import sabina.Route;
+
+/**
+ * Route matcher that compiles routes into a trie per HTTP method. Each level of the trie
+ * holds one path segment: static segments are looked up in a hash map, while ':param' and '*'
+ * segments have their own branch.
+ *
+ * <p>Lookup cost depends on the number of segments of the requested path, not on the number
+ * of routes. Routes for an exact host (see {@link RouteConditions#host(String)}) are indexed
+ * by host name in each node, so only the ones for the requested host are checked. Routes keep
+ * their registration order so the first registered match wins (the same as
+ * {@link SimpleRouteMatcher}).
+ *
+ * <p>Tries are built on the first lookup after routes are added or removed (registering n
+ * routes costs one build, not n) and published at once, so lookups never see a partially
+ * updated trie. Only the lookup building the trie takes a lock.
+ *
+ * @author jamming
+ */
+final class TrieRouteMatcher implements RouteMatcher {
+    private static final String PARAM_PREFIX = ":";
+    private static final String WILDCARD = "*";
+    /** Nodes with more static children than this are looked up by hash instead of by scan. */
+    private static final int SCAN_LIMIT = 8;
+
+    /** Route with its registration order and the flags used to check trailing slashes. */
+    private static final class Entry {
+        final Route route;
+        final int order;
+        final boolean endsWithWildcard;
+        final boolean endsWithSlash;
+
+        Entry (Route route, int order) {
+            this.route = route;
+            this.order = order;
+            this.endsWithWildcard = route.path.endsWith (WILDCARD);
+            this.endsWithSlash = route.path.endsWith ("/");
+        }
+    }
+
+    /** Trie node. Routes are stored in the node reached after consuming all their parts. */
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<> ();
+        final List<Entry> routes = new ArrayList<> ();
+        /** Routes for an exact host by lower case host name (not included in 'routes'). */
+        final Map<String, List<Entry>> hostRoutes = new HashMap<> ();
+        Node param;
+        Node wildcard;
+
+        /* Static children also kept in arrays to compare segments without copying them */
+        String[] keys = new String[0];
+        Node[] nodes = new Node[0];
+
+        Node child (String part) {
+            if (part.startsWith (PARAM_PREFIX))
+                return param == null? param = new Node () : param;
+            if (part.equals (WILDCARD))
+                return wildcard == null? wildcard = new Node () : wildcard;
+
+            Node child = children.get (part);
+            if (child == null) {
+                child = new Node ();
+                children.put (part, child);
+                keys = Arrays.copyOf (keys, keys.length + 1);
+                nodes = Arrays.copyOf (nodes, nodes.length + 1);
+                keys[keys.length - 1] = part;
+                nodes[nodes.length - 1] = child;
+            }
+            return child;
+        }
+
+        void add (Entry entry) {
+            String host = entry.route.conditions.hostKey;
+            if (host == null)
+                routes.add (entry);
+            else
+                hostRoutes.computeIfAbsent (host, k -> new ArrayList<> ()).add (entry);
+        }
+
+        Node child (PathSegments segments, int index) {
+            if (keys.length > SCAN_LIMIT)
+                return children.get (segments.get (index));
+
+            for (int ii = 0; ii < keys.length; ii++)
+                if (segments.matches (index, keys[ii]))
+                    return nodes[ii];
+            return null;
+        }
+    }
+
+    /**
+     * Accumulates matches: the preferred one (see {@link RouteConditions#select(List,
+     * RequestHeaders)}) or all of them. Routes with typed parameters are discarded here if the
+     * requested path has invalid values.
+     */
+    private static final class Matches {
+        final PathSegments path;
+        final RequestHeaders headers;
+        final List<Entry> all;
+        Entry best;
+        float preference = -1F;
+        /* Requested host, looked up the first time a node has host routes */
+        String host;
+        boolean hostRead;
+
+        Matches (PathSegments path, RequestHeaders headers, boolean collectAll) {
+            this.path = path;
+            this.headers = headers;
+            all = collectAll? new ArrayList<> () : null;
+        }
+
+        /*
+         * Routes of a node for the requested host. When all matches are collected, conditions
+         * are not checked and the routes of every host are returned.
+         */
+        List<Entry> hostRoutes (Node node) {
+            if (node.hostRoutes.isEmpty ())
+                return emptyList ();
+
+            if (all != null) {
+                List<Entry> result = new ArrayList<> ();
+                node.hostRoutes.values ().forEach (result::addAll);
+                return result;
+            }
+
+            if (!hostRead) {
+                host = RouteConditions.hostKey (headers);
+                hostRead = true;
+            }
+            List<Entry> result = host == null? null : node.hostRoutes.get (host);
+            return result == null? emptyList () : result;
+        }
+
+        void add (Entry entry) {
+            if (!ParamType.matches (entry.route, path))
+                return;
+
+            if (all != null) {
+                all.add (entry);
+                return;
+            }
+
+            float entryPreference = entry.route.conditions.preference (headers);
+            if (entryPreference > preference
+                || (entryPreference == preference && best != null && entry.order < best.order)) {
+
+                best = entry;
+                preference = entryPreference;
+            }
+        }
+    }
+
+    /**
+     * Tries built from a list of routes. Nodes are only modified while the snapshot is built, it
+     * is not changed after being published (after adding or removing routes, the next lookup
+     * builds a new one).
+     */
+    private static final class Snapshot {
+        /** All routes in registration order. */
+        final List<Route> all;
+        /** Registered routes by method in registration order. */
+        final Map<HttpMethod, List<Route>> routes = new EnumMap<> (HttpMethod.class);
+        final Map<HttpMethod, Node> trees = new EnumMap<> (HttpMethod.class);
+        /** Filters without path (they match all requests). */
+        final Map<HttpMethod, List<Entry>> globalFilters = new EnumMap<> (HttpMethod.class);
+        final RoutePlans plans = new RoutePlans ();
+
+        Snapshot (List<Route> all) {
+            this.all = all;
+            for (int order = 0; order < all.size (); order++)
+                add (new Entry (all.get (order), order));
+        }
+
+        private void add (Entry entry) {
+            Route target = entry.route;
+            routes.computeIfAbsent (target.method, k -> new ArrayList<> ()).add (target);
+
+            if (target.isFilter () && target.path.equals (ALL_PATHS)) {
+                globalFilters.computeIfAbsent (target.method, k -> new ArrayList<> ()).add (entry);
+                return;
+            }
+
+            Node node = trees.computeIfAbsent (target.method, k -> new Node ());
+            for (String part : target.routeParts)
+                node = node.child (part);
+            node.add (entry);
+        }
+    }
+
+    /** Registered routes in registration order (guarded by 'this'). */
+    private final List<Route> routes = new ArrayList<> ();
+    /** Tries of the current routes (null if routes changed after it was built). */
+    private volatile Snapshot snapshot = new Snapshot (emptyList ());
+
+    private final ExceptionHandlers exceptionHandlers = new ExceptionHandlers ();
+
+    @Override public synchronized void processRoute (Route target) {
+        routes.add (target);
+        snapshot = null;
+    }
+
+    @Override public synchronized boolean removeRoute (HttpMethod method, String path) {
+        if (!routes.removeIf (route -> route.method == method && route.path.equals (path)))
+            return false;
+
+        snapshot = null;
+        return true;
+    }
+
+    private Snapshot snapshot () {
+        Snapshot current = snapshot;
+        return current != null? current : build ();
+    }
+
+    private synchronized Snapshot build () {
+        if (snapshot == null)
+            snapshot = new Snapshot (new ArrayList<> (routes));
+        return snapshot;
+    }
+
+    @Override public <T extends Exception> void processFault (
+        Class<T> fault, BiConsumer<? extends Exception, Request> handler) {
+        exceptionHandlers.put (fault, handler);
+    }
+
+    @Override public RouteMatch findTarget (HttpMethod httpMethod, String path) {
+        PathSegments segments = PathSegments.of (path);
+        Matches matches = find (snapshot (), httpMethod, segments, RequestHeaders.NONE, false);
+        return matches.best != null? new RouteMatch (matches.best.route, segments) : null;
+    }
+
+    @Override public List<RouteMatch> findTargets (HttpMethod httpMethod, String path) {
+        PathSegments segments = PathSegments.of (path);
+        Matches matches = find (snapshot (), httpMethod, segments, RequestHeaders.NONE, true);
+        matches.all.sort (comparingInt (entry -> entry.order));
+
+        List<RouteMatch> result = new ArrayList<> (matches.all.size ());
+        for (Entry entry : matches.all)
+            result.add (new RouteMatch (entry.route, segments));
+        return result;
+    }
+
+    @Override public RoutePlan findPlan (
+        HttpMethod httpMethod, PathSegments path, RequestHeaders headers) {
+
+        Snapshot routes = snapshot ();
+        Matches matches = find (routes, httpMethod, path, headers, false);
+        return routes.plans.find (matches.best != null? matches.best.route : null, routes.routes);
+    }
+
+    @Override
+    public <T extends Exception> BiConsumer<T, Request> findHandler (Class<T> exceptionClass) {
+        return exceptionHandlers.find (exceptionClass);
+    }
+
+    private Matches find (
+        Snapshot routes,
+        HttpMethod httpMethod,
+        PathSegments path,
+        RequestHeaders headers,
+        boolean collectAll) {
+
+        Matches matches = new Matches (path, headers, collectAll);
+
+        List<Entry> filters = routes.globalFilters.get (httpMethod);
+        if (filters != null)
+            filters.forEach (matches::add);
+
+        Node root = routes.trees.get (httpMethod);
+        if (root != null)
+            find (root, path, 0, path.trailingSlash (), matches);
+
+        return matches;
+    }
+
+    /**
+     * Walks the trie following the requested path segments. It mimics the rules of
+     * {@link SimpleRouteMatcher}: paths must agree on the trailing slash unless the route ends
+     * with a wildcard, and routes ending with a wildcard match any longer path (or the same path
+     * with an extra trailing slash).
+     */
+    private void find (
+        Node node, PathSegments segments, int depth, boolean trailingSlash, Matches matches) {
+
+        int size = segments.size ();
+
+        addRoutes (node.routes, depth, size, trailingSlash, matches);
+        addRoutes (matches.hostRoutes (node), depth, size, trailingSlash, matches);
+
+        if (depth < size) {
+            Node child = node.child (segments, depth);
+            if (child != null)
+                find (child, segments, depth + 1, trailingSlash, matches);
+            if (node.param != null)
+                find (node.param, segments, depth + 1, trailingSlash, matches);
+            if (node.wildcard != null)
+                find (node.wildcard, segments, depth + 1, trailingSlash, matches);
+        }
+        else if (trailingSlash) {
+            // '/foo/' matches '/foo/*' and '/foo/:param*'
+            addWildcardRoutes (node.param, matches);
+            addWildcardRoutes (node.wildcard, matches);
+        }
+    }
+
+    private void addRoutes (
+        List<Entry> entries, int depth, int size, boolean trailingSlash, Matches matches) {
+
+        for (Entry entry : entries)
+            if (entry.endsWithWildcard || (depth == size && entry.endsWithSlash == trailingSlash))
+                matches.add (entry);
+    }
+
+    private void addWildcardRoutes (Node node, Matches matches) {
+        if (node == null)
+            return;
+
+        for (Entry entry : node.routes)
+            if (entry.endsWithWildcard)
+                matches.add (entry);
+        for (Entry entry : matches.hostRoutes (node))
+            if (entry.endsWithWildcard)
+                matches.add (entry);
+    }
+}
@@ -14,6 +14,8 @@
 
 package sabina.server;
 
+import java.util.concurrent.Executor;
+
 import sabina.route.RouteMatcher;
 
 /**
@@ -24,25 +26,43 @@ public final class BackendFactory {
         throw new IllegalStateException ();
     }
 
-    private static Backend createJetty (RouteMatcher matcher, boolean hasMultipleHandler) {
-        return new JettyServer (createFilter ("jetty", matcher, hasMultipleHandler));
+    public static Backend create (String backend, RouteMatcher matcher, boolean multipleHandlers) {
+        return create (backend, matcher, "platform", new DefaultHeaders (), multipleHandlers);
     }
 
-    private static MatcherFilter createFilter (
-        String backend, RouteMatcher matcher, boolean hasMultipleHandler) {
-        return new MatcherFilter (matcher, backend, hasMultipleHandler);
-    }
+    /**
+     * Creates a backend running handlers with the given executor.
+     *
+     * @param backend Backend name: 'jetty', 'undertow', 'undertow-native' or 'netty'.
+     * @param matcher Route matcher used by the backend.
+     * @param executor Handlers executor: 'platform' or 'virtual'.
+     * @param headers Headers added to all responses.
+     * @param multipleHandlers If true, unmatched requests are left to other handlers.
+     * @return The backend.
+     */
+    public static Backend create (
+        String backend,
+        RouteMatcher matcher,
+        String executor,
+        DefaultHeaders headers,
+        boolean multipleHandlers) {
 
-    private static Backend createUndertow (RouteMatcher matcher, boolean hasMultipleHandler) {
-        return new UndertowServer (createFilter ("undertow", matcher, hasMultipleHandler));
-    }
+        final Executor handlers = HandlerExecutors.create (executor);
 
-    public static Backend create (String backend, RouteMatcher matcher, boolean multipleHandlers) {
         switch (backend) {
             case "jetty":
-                return createJetty (matcher, multipleHandlers);
+                return new JettyServer (
+                    new MatcherFilter (matcher, backend, handlers, headers, multipleHandlers));
             case "undertow":
-                return createUndertow (matcher, multipleHandlers);
+                return new UndertowServer (
+                    new MatcherFilter (matcher, backend, handlers, headers, multipleHandlers));
+            // Native backends have no other handlers, the filter handles all the requests
+            case "undertow-native":
+                return new UndertowNativeServer (
+                    new MatcherFilter (matcher, backend, handlers, headers, false));
+            case "netty":
+                return new NettyServer (
+                    new MatcherFilter (matcher, backend, handlers, headers, false));
             default:
                 throw new IllegalStateException ();
         }
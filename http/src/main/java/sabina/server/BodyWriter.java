@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import sabina.Body;
+
+/**
+ * Writes handler results to the response. Each supported type has its own write path so large
+ * bodies are not converted to strings nor buffered in full:
+ *
+ * <ul>
+ *     <li><code>String</code>: encoded as UTF-8 (other types not listed are sent as strings).</li>
+ *     <li><code>byte[]</code> and <code>ByteBuffer</code>: written as they are.</li>
+ *     <li><code>Body</code>: its bytes (encoded once) are written with its length.</li>
+ *     <li><code>InputStream</code>: copied in chunks and closed.</li>
+ *     <li><code>Path</code>: the file is sent (without heap copies if the backend allows it).</li>
+ *     <li><code>Stream</code> and <code>Iterator</code>: each element is written as it is
+ *     produced (byte arrays as they are, other elements as strings) and sent in chunks.</li>
+ * </ul>
+ *
+ * @author jamming
+ */
+final class BodyWriter {
+    static final String DEFAULT_CONTENT_TYPE = "text/html; charset=utf-8";
+    private static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private BodyWriter () {
+        throw new IllegalStateException ();
+    }
+
+    /**
+     * Checks if a handler result has to be sent as it is (instead of converting it to string).
+     *
+     * @param body Handler result.
+     * @return True if the body has a write path of its own.
+     */
+    static boolean isStreamed (Object body) {
+        return body instanceof Body
+            || body instanceof byte[]
+            || body instanceof ByteBuffer
+            || body instanceof InputStream
+            || body instanceof Path
+            || body instanceof Stream
+            || body instanceof Iterator;
+    }
+
+    /**
+     * Returns the content type used if the handler did not set one.
+     *
+     * @param body Response body.
+     * @return The default content type for the body.
+     */
+    static String contentType (Object body) throws IOException {
+        if (body instanceof Body) {
+            String type = ((Body)body).contentType;
+            return type != null? type : DEFAULT_CONTENT_TYPE;
+        }
+
+        if (body instanceof Path) {
+            String type = Files.probeContentType ((Path)body);
+            return type != null? type : BINARY_CONTENT_TYPE;
+        }
+
+        return body instanceof byte[] || body instanceof ByteBuffer || body instanceof InputStream?
+            BINARY_CONTENT_TYPE : DEFAULT_CONTENT_TYPE;
+    }
+
+    /**
+     * Writes a body to the response.
+     *
+     * @param body Body to write (any object, not only the streamed ones).
+     * @param response Backend response.
+     * @param backend Server backend ('jetty' allows sending files without copies).
+     */
+    static void write (Object body, ServerResponse response, String backend)
+        throws IOException {
+
+        if (body instanceof Body) {
+            Body content = (Body)body;
+            response.contentLength (content.length ());
+            response.send (content.buffer ());
+        }
+        else if (body instanceof byte[]) {
+            byte[] bytes = (byte[])body;
+            response.contentLength (bytes.length);
+            response.send (ByteBuffer.wrap (bytes));
+        }
+        else if (body instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer)body).duplicate ();
+            response.contentLength (buffer.remaining ());
+            response.send (buffer);
+        }
+        else if (body instanceof InputStream) {
+            try (InputStream input = (InputStream)body) {
+                copy (input, response.outputStream ());
+            }
+        }
+        else if (body instanceof Path) {
+            Path file = (Path)body;
+            long size = Files.size (file);
+            response.contentLength (size);
+            write (file, 0, size, response, backend);
+        }
+        else if (body instanceof Stream) {
+            try (Stream<?> stream = (Stream<?>)body) {
+                writeAll (stream.iterator (), response.outputStream ());
+            }
+        }
+        else if (body instanceof Iterator) {
+            writeAll ((Iterator<?>)body, response.outputStream ());
+        }
+        else {
+            response.send (ByteBuffer.wrap (body.toString ().getBytes (UTF_8)));
+        }
+    }
+
+    /**
+     * Sends a region of a file as the whole body. Netty sends it as a file region. Otherwise the
+     * region is memory mapped and sent without heap copies if the backend allows it. Regions too
+     * big to be mapped at once are transferred to the output stream.
+     *
+     * @param file File to send.
+     * @param position First byte of the region.
+     * @param count Region length.
+     * @param response Backend response (the content length must be already set).
+     * @param backend Server backend ('jetty' sends mapped buffers without copies and 'netty'
+     *  file regions).
+     * @throws IOException If the file can not be read or the response written.
+     */
+    static void write (
+        Path file, long position, long count, ServerResponse response, String backend)
+        throws IOException {
+
+        if ("netty".equals (backend) && NettyResponse.sendFile (response, file, position, count))
+            return;
+
+        try (FileChannel channel = FileChannel.open (file, READ)) {
+            if (count > Integer.MAX_VALUE) {
+                transfer (channel, position, count, response.outputStream ());
+                return;
+            }
+
+            // The mapping stays valid after closing the channel (until it is collected)
+            ByteBuffer region = channel.map (READ_ONLY, position, count);
+            if (!"jetty".equals (backend)
+                || !JettyServer.sendContent (response.outputStream (), region))
+                response.send (region);
+        }
+    }
+
+    /**
+     * Copies a region of a file to a stream.
+     *
+     * @param channel File channel.
+     * @param position First byte of the region.
+     * @param count Region length.
+     * @param output Destination stream.
+     * @throws IOException If the file can not be read or the stream written.
+     */
+    static void transfer (FileChannel channel, long position, long count, OutputStream output)
+        throws IOException {
+
+        final WritableByteChannel target = Channels.newChannel (output);
+        for (long sent = 0; sent < count; ) {
+            long transferred = channel.transferTo (position + sent, count - sent, target);
+            if (transferred <= 0)
+                throw new IOException ("File shorter than expected");
+            sent += transferred;
+        }
+    }
+
+    private static void copy (InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int count = input.read (buffer); count != -1; count = input.read (buffer))
+            output.write (buffer, 0, count);
+    }
+
+    /** The content length is unknown, the container sends it chunked when its buffer fills. */
+    private static void writeAll (Iterator<?> elements, OutputStream output) throws IOException {
+        while (elements.hasNext ()) {
+            Object element = elements.next ();
+            if (element instanceof byte[])
+                output.write ((byte[])element);
+            else if (element != null)
+                output.write (element.toString ().getBytes (UTF_8));
+        }
+    }
+}
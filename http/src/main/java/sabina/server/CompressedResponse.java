@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static sabina.server.Compression.GZIP;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.servlet.http.Cookie;
+
+/**
+ * Response compressing its body as it is written (the compressed data goes straight to the
+ * backend output, it is not buffered apart from the deflater buffer). Small bodies (of known
+ * size) are sent uncompressed. {@link #finish()} must be called after writing the body.
+ *
+ * @author jamming
+ */
+final class CompressedResponse implements ServerResponse {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Deflater stream writing the gzip header and trailer if the encoding is 'gzip' (the
+     * deflater is not owned by the stream).
+     */
+    private static final class CompressingStream extends DeflaterOutputStream {
+        private static final byte[] GZIP_HEADER = {
+            0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+        };
+
+        private final CRC32 crc;
+
+        CompressingStream (OutputStream output, Deflater deflater, boolean gzip)
+            throws IOException {
+
+            super (output, deflater, BUFFER_SIZE);
+            crc = gzip? new CRC32 () : null;
+            if (gzip)
+                output.write (GZIP_HEADER);
+        }
+
+        @Override public void write (byte[] bytes, int offset, int length) throws IOException {
+            super.write (bytes, offset, length);
+            if (crc != null)
+                crc.update (bytes, offset, length);
+        }
+
+        @Override public void finish () throws IOException {
+            super.finish ();
+            if (crc != null) {
+                writeInt ((int)crc.getValue ());
+                writeInt ((int)def.getBytesRead ());
+            }
+            out.flush ();
+        }
+
+        private void writeInt (int value) throws IOException {
+            out.write (value & 0xFF);
+            out.write ((value >> 8) & 0xFF);
+            out.write ((value >> 16) & 0xFF);
+            out.write ((value >> 24) & 0xFF);
+        }
+    }
+
+    private final ServerResponse response;
+    private final Compression compression;
+    private final String encoding;
+
+    /* Null until the body is written and the response is compressed */
+    private Deflater deflater;
+    private CompressingStream stream;
+    private boolean uncompressed;
+
+    CompressedResponse (ServerResponse response, Compression compression, String encoding) {
+        this.response = response;
+        this.compression = compression;
+        this.encoding = encoding;
+    }
+
+    @Override public void status (int status) { response.status (status); }
+    @Override public String contentType () { return response.contentType (); }
+    @Override public void contentType (String type) { response.contentType (type); }
+
+    /* The length of compressed bodies is not known in advance (they are sent chunked) */
+    @Override public void contentLength (long length) {
+        if (stream == null && length < compression.minSize) {
+            uncompressed = true;
+            response.contentLength (length);
+        }
+    }
+
+    @Override public String header (String name) { return response.header (name); }
+
+    @Override public void addHeader (String name, String value) {
+        response.addHeader (name, value);
+    }
+
+    @Override public void setHeader (String name, String value) {
+        response.setHeader (name, value);
+    }
+
+    @Override public void addDateHeader (String name, long date) {
+        response.addDateHeader (name, date);
+    }
+
+    @Override public void addCookie (Cookie cookie) { response.addCookie (cookie); }
+
+    @Override public void redirect (String location) throws IOException {
+        response.redirect (location);
+    }
+
+    @Override public void sendError (int status) throws IOException {
+        response.sendError (status);
+    }
+
+    @Override public boolean committed () { return response.committed (); }
+
+    @Override public OutputStream outputStream () throws IOException {
+        if (uncompressed)
+            return response.outputStream ();
+
+        if (stream == null) {
+            response.setHeader ("Content-Encoding", encoding);
+            deflater = compression.acquire (encoding);
+            stream = new CompressingStream (
+                response.outputStream (), deflater, encoding.equals (GZIP));
+        }
+        return stream;
+    }
+
+    @Override public void send (ByteBuffer buffer) throws IOException {
+        if (stream == null && buffer.remaining () < compression.minSize)
+            uncompressed = true;
+
+        if (uncompressed)
+            response.send (buffer);
+        else
+            ServerResponse.super.send (buffer);
+    }
+
+    /**
+     * Completes the compressed body (if any) and returns the deflater to its pool. It must be
+     * called even if writing the body failed.
+     */
+    void finish () throws IOException {
+        if (stream == null)
+            return;
+
+        try {
+            stream.finish ();
+        }
+        finally {
+            compression.release (encoding, deflater);
+            stream = null;
+            deflater = null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static sabina.server.Settings.setting;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Response compression settings and the pools of deflaters used to compress bodies. Bodies
+ * are compressed if the client accepts 'gzip' or 'deflate', their type is text based (text,
+ * JSON, XML or JavaScript) and their size is known to be at least the minimum size (bodies of
+ * unknown size are always compressed).
+ *
+ * <p>It is configured with: 'sabina.compression' (disabled by default),
+ * 'sabina.compression.min.size' and 'sabina.compression.level'.
+ *
+ * @author jamming
+ */
+final class Compression {
+    static final String GZIP = "gzip", DEFLATE = "deflate";
+
+    /** Deflaters kept in each pool (more are created under load and discarded afterwards). */
+    private static final int POOL_SIZE = 64;
+
+    /**
+     * Checks if a content type is worth compressing (images, media and archives are already
+     * compressed).
+     *
+     * @param contentType Response content type (can be null).
+     * @return True for text, JSON, XML and JavaScript contents.
+     */
+    static boolean compressible (String contentType) {
+        if (contentType == null)
+            return false;
+
+        String type = contentType.toLowerCase ();
+        return type.startsWith ("text/")
+            || type.contains ("json")
+            || type.contains ("xml")
+            || type.contains ("javascript");
+    }
+
+    /**
+     * Selects the encoding for a request. Encodings with 'q=0' are not accepted and 'gzip' is
+     * preferred over 'deflate' ('*' accepts 'gzip').
+     *
+     * @param acceptEncoding Value of the 'Accept-Encoding' request header (can be null).
+     * @return 'gzip', 'deflate' or null if none of them is accepted.
+     */
+    static String encoding (String acceptEncoding) {
+        if (acceptEncoding == null)
+            return null;
+
+        boolean gzip = false, deflate = false;
+        for (String part : acceptEncoding.split (",")) {
+            int separator = part.indexOf (';');
+            String name = (separator == -1? part : part.substring (0, separator)).trim ();
+            if (separator != -1 && rejected (part.substring (separator + 1)))
+                continue;
+
+            if (name.equalsIgnoreCase (GZIP) || name.equals ("*"))
+                gzip = true;
+            else if (name.equalsIgnoreCase (DEFLATE))
+                deflate = true;
+        }
+
+        return gzip? GZIP : deflate? DEFLATE : null;
+    }
+
+    /* Checks if the parameters of an encoding have 'q=0' */
+    private static boolean rejected (String parameters) {
+        for (String parameter : parameters.split (";")) {
+            String[] pair = parameter.trim ().split ("=");
+            if (pair.length == 2 && pair[0].trim ().equalsIgnoreCase ("q")) {
+                try {
+                    return Double.parseDouble (pair[1].trim ()) == 0;
+                }
+                catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    final boolean enabled;
+    final int minSize;
+    final int level;
+
+    /* Raw deflaters (wrapped as gzip) and zlib ones ('deflate' encoding) */
+    private final BlockingQueue<Deflater> gzipDeflaters = new ArrayBlockingQueue<> (POOL_SIZE);
+    private final BlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<> (POOL_SIZE);
+
+    Compression (boolean enabled, int minSize, int level) {
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.level = level;
+    }
+
+    /**
+     * Creates the compression with the server settings.
+     *
+     * @return The compression settings (disabled if they are not set).
+     */
+    static Compression fromSettings () {
+        return new Compression (
+            setting ("sabina.compression", false),
+            setting ("sabina.compression.min.size", 1024),
+            setting ("sabina.compression.level", Deflater.DEFAULT_COMPRESSION)
+        );
+    }
+
+    /**
+     * Returns a deflater for an encoding taking it from its pool if there is one available.
+     *
+     * @param encoding 'gzip' or 'deflate'.
+     * @return A deflater ready to be used.
+     */
+    Deflater acquire (String encoding) {
+        boolean gzip = encoding.equals (GZIP);
+        Deflater deflater = (gzip? gzipDeflaters : zlibDeflaters).poll ();
+        return deflater != null? deflater : new Deflater (level, gzip);
+    }
+
+    /**
+     * Resets a deflater and returns it to its pool (it is released if the pool is full).
+     *
+     * @param encoding Encoding the deflater was acquired for.
+     * @param deflater Deflater to return.
+     */
+    void release (String encoding, Deflater deflater) {
+        deflater.reset ();
+        if (!(encoding.equals (GZIP)? gzipDeflaters : zlibDeflaters).offer (deflater))
+            deflater.end ();
+    }
+}
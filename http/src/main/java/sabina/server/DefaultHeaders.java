@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.lang.System.currentTimeMillis;
+import static java.time.ZoneOffset.UTC;
+import static java.util.Arrays.copyOf;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Headers added to all responses before the filters run (filters and handlers can override
+ * them). Values are set as they are registered, they are not formatted on each request.
+ *
+ * <p>The 'Date' header value is shared by all servers and it is formatted once per second (by
+ * the first request of each second), not on every response.
+ *
+ * @author jamming
+ */
+public final class DefaultHeaders {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter
+        .ofPattern ("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+        .withZone (UTC);
+
+    /** Date header value along the second it was formatted for. */
+    private static final class CachedDate {
+        final long second;
+        final String value;
+
+        CachedDate (long second) {
+            this.second = second;
+            this.value = DATE_FORMAT.format (Instant.ofEpochSecond (second));
+        }
+    }
+
+    private static volatile CachedDate cachedDate = new CachedDate (0);
+
+    /**
+     * Returns the current date formatted for HTTP headers (RFC 1123).
+     *
+     * @return The current date (with seconds precision).
+     */
+    public static String httpDate () {
+        final long second = currentTimeMillis () / 1000;
+        CachedDate result = cachedDate;
+        if (result.second != second) {
+            result = new CachedDate (second);
+            cachedDate = result;
+        }
+        return result.value;
+    }
+
+    /**
+     * Formats a date for HTTP headers (RFC 1123).
+     *
+     * @param millis Date in milliseconds from the epoch.
+     * @return The formatted date (with seconds precision).
+     */
+    static String httpDate (long millis) {
+        return DATE_FORMAT.format (Instant.ofEpochMilli (millis));
+    }
+
+    /* Names and values (in pairs), replaced when a header is added */
+    private volatile String[] headers = new String[0];
+    private volatile boolean date;
+
+    /**
+     * Adds a header to all responses. If the header was already added its value is replaced.
+     *
+     * @param name Header name.
+     * @param value Header value.
+     */
+    public synchronized void add (String name, String value) {
+        if (name == null || value == null)
+            throw new IllegalArgumentException ("Header name and value are required");
+
+        String[] current = headers;
+        for (int ii = 0; ii < current.length; ii += 2) {
+            if (current[ii].equalsIgnoreCase (name)) {
+                String[] result = current.clone ();
+                result[ii + 1] = value;
+                headers = result;
+                return;
+            }
+        }
+
+        String[] result = copyOf (current, current.length + 2);
+        result[current.length] = name;
+        result[current.length + 1] = value;
+        headers = result;
+    }
+
+    /**
+     * Enables the 'Date' header on all responses (for backends not adding it).
+     *
+     * @param date True to add the 'Date' header.
+     */
+    public void date (boolean date) {
+        this.date = date;
+    }
+
+    public boolean date () {
+        return date;
+    }
+
+    void write (ServerResponse response) {
+        final String[] current = headers;
+        for (int ii = 0; ii < current.length; ii += 2)
+            response.setHeader (current[ii], current[ii + 1]);
+        if (date)
+            response.setHeader ("Date", httpDate ());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpSession;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+
+/**
+ * Request of the native Undertow backend (backed by the exchange, without servlet wrappers).
+ *
+ * <p>Parameters are taken from the query string only (form parameters are not parsed) and
+ * sessions are not supported.
+ *
+ * @author jamming
+ */
+final class ExchangeRequest implements ServerRequest {
+    private final HttpServerExchange exchange;
+    private Map<String, Object> attributes;
+
+    ExchangeRequest (HttpServerExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    @Override public String method () { return exchange.getRequestMethod ().toString (); }
+    @Override public String scheme () { return exchange.getRequestScheme (); }
+    @Override public String host () { return exchange.getHostName (); }
+    @Override public int port () { return exchange.getHostPort (); }
+    @Override public String uri () { return exchange.getRequestURI (); }
+    @Override public String url () { return exchange.getRequestURL (); }
+    @Override public String protocol () { return exchange.getProtocol ().toString (); }
+    @Override public boolean secure () { return "https".equals (scheme ()); }
+
+    @Override public String remoteAddress () {
+        return exchange.getSourceAddress ().getAddress ().getHostAddress ();
+    }
+
+    @Override public String pathInfo () { return exchange.getRelativePath (); }
+    @Override public String servletPath () { return ""; }
+    @Override public String contextPath () { return ""; }
+
+    @Override public String queryString () {
+        String query = exchange.getQueryString ();
+        return query.isEmpty ()? null : query;
+    }
+
+    @Override public String parameter (String name) {
+        Deque<String> values = exchange.getQueryParameters ().get (name);
+        return values == null? null : values.peekFirst ();
+    }
+
+    @Override public Set<String> parameterNames () {
+        return exchange.getQueryParameters ().keySet ();
+    }
+
+    @Override public String header (String name) {
+        return exchange.getRequestHeaders ().getFirst (name);
+    }
+
+    @Override public Set<String> headerNames () {
+        Set<String> names = new TreeSet<> ();
+        for (HttpString name : exchange.getRequestHeaders ().getHeaderNames ())
+            names.add (name.toString ());
+        return names;
+    }
+
+    @Override public String contentType () {
+        return exchange.getRequestHeaders ().getFirst (Headers.CONTENT_TYPE);
+    }
+
+    @Override public int contentLength () {
+        long length = exchange.getRequestContentLength ();
+        return length > Integer.MAX_VALUE? -1 : (int)length;
+    }
+
+    @Override public InputStream inputStream () throws IOException {
+        if (!exchange.isBlocking ())
+            exchange.startBlocking ();
+        return exchange.getInputStream ();
+    }
+
+    @Override public Object attribute (String name) {
+        return attributes == null? null : attributes.get (name);
+    }
+
+    @Override public void attribute (String name, Object value) {
+        if (attributes == null)
+            attributes = new HashMap<> ();
+        attributes.put (name, value);
+    }
+
+    @Override public Set<String> attributeNames () {
+        return attributes == null? new HashSet<> () : new HashSet<> (attributes.keySet ());
+    }
+
+    @Override public Cookie[] cookies () {
+        Map<String, io.undertow.server.handlers.Cookie> cookies = exchange.getRequestCookies ();
+        if (cookies.isEmpty ())
+            return null;
+
+        List<Cookie> result = new ArrayList<> (cookies.size ());
+        for (io.undertow.server.handlers.Cookie cookie : cookies.values ())
+            result.add (new Cookie (cookie.getName (), cookie.getValue ()));
+        return result.toArray (new Cookie[result.size ()]);
+    }
+
+    @Override public HttpSession session (boolean create) {
+        throw new UnsupportedOperationException ("Sessions not supported by 'undertow-native'");
+    }
+
+    @Override public boolean forwarded () { return false; }
+
+    @Override public boolean asyncSupported () { return true; }
+
+    /* The exchange is not ended when the handler returns if it is dispatched */
+    @Override public Runnable startAsync () {
+        exchange.dispatch (SameThreadExecutor.INSTANCE, () -> {});
+        return exchange::endExchange;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import javax.servlet.http.Cookie;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.CookieImpl;
+import io.undertow.util.DateUtils;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+
+/**
+ * Response of the native Undertow backend. Complete bodies are sent without blocking unless
+ * the exchange has been switched to blocking mode (streamed bodies or request body reads).
+ *
+ * @author jamming
+ */
+final class ExchangeResponse implements ServerResponse {
+    private final HttpServerExchange exchange;
+
+    ExchangeResponse (HttpServerExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    @Override public void status (int status) { exchange.setResponseCode (status); }
+
+    @Override public String contentType () {
+        return exchange.getResponseHeaders ().getFirst (Headers.CONTENT_TYPE);
+    }
+
+    @Override public void contentType (String contentType) {
+        exchange.getResponseHeaders ().put (Headers.CONTENT_TYPE, contentType);
+    }
+
+    @Override public void contentLength (long length) {
+        exchange.setResponseContentLength (length);
+    }
+
+    @Override public String header (String name) {
+        return exchange.getResponseHeaders ().getFirst (name);
+    }
+
+    @Override public void addHeader (String name, String value) {
+        exchange.getResponseHeaders ().add (new HttpString (name), value);
+    }
+
+    @Override public void setHeader (String name, String value) {
+        exchange.getResponseHeaders ().put (new HttpString (name), value);
+    }
+
+    @Override public void addDateHeader (String name, long date) {
+        addHeader (name, DateUtils.toDateString (new Date (date)));
+    }
+
+    @Override public void addCookie (Cookie cookie) {
+        CookieImpl result = new CookieImpl (cookie.getName (), cookie.getValue ());
+        if (cookie.getPath () != null && !cookie.getPath ().isEmpty ())
+            result.setPath (cookie.getPath ());
+        if (cookie.getMaxAge () >= 0)
+            result.setMaxAge (cookie.getMaxAge ());
+        result.setSecure (cookie.getSecure ());
+        exchange.setResponseCookie (result);
+    }
+
+    @Override public void redirect (String location) {
+        exchange.setResponseCode (302);
+        exchange.getResponseHeaders ().put (Headers.LOCATION, location);
+    }
+
+    @Override public void sendError (int status) {
+        exchange.setResponseCode (status);
+    }
+
+    @Override public boolean committed () { return exchange.isResponseStarted (); }
+
+    @Override public OutputStream outputStream () {
+        if (!exchange.isBlocking ())
+            exchange.startBlocking ();
+        return exchange.getOutputStream ();
+    }
+
+    @Override public void send (ByteBuffer buffer) throws IOException {
+        if (exchange.isBlocking ())
+            ServerResponse.super.send (buffer);
+        else
+            exchange.getResponseSender ().send (buffer);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.util.logging.Logger.getLogger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Creates the executors running route handlers ('sabina.executor' setting).
+ *
+ * <p>With 'platform' (the default) handlers run in the container's threads. With 'virtual' each
+ * handler runs in its own virtual thread, blocking code (ie: JDBC) does not hold container
+ * threads. Virtual threads are looked up by reflection, on JDKs without them handlers run in
+ * the container's threads.
+ *
+ * @author jamming
+ */
+final class HandlerExecutors {
+    private static final Logger LOG = getLogger (HandlerExecutors.class.getName ());
+
+    private HandlerExecutors () {
+        throw new IllegalStateException ();
+    }
+
+    /**
+     * Creates an executor of the given type.
+     *
+     * @param executor Executor type: 'platform' or 'virtual'.
+     * @return The executor or null if handlers have to run in the container's threads.
+     * @throws IllegalArgumentException If the executor type is not known.
+     */
+    static Executor create (String executor) {
+        switch (executor) {
+            case "platform":
+                return null;
+            case "virtual":
+                return virtual ();
+            default:
+                throw new IllegalArgumentException ("Unknown handlers executor: '" + executor
+                    + "' (valid values: platform, virtual)");
+        }
+    }
+
+    private static Executor virtual () {
+        try {
+            return (Executor)Executors.class
+                .getMethod ("newVirtualThreadPerTaskExecutor")
+                .invoke (null);
+        }
+        catch (ReflectiveOperationException e) {
+            LOG.warning ("Virtual threads not supported, handlers run in container threads");
+            return null;
+        }
+    }
+}
@@ -16,110 +16,148 @@ package sabina.server;
 
 import static java.lang.System.exit;
 import static co.there4.bali.Strings.isEmpty;
+import static sabina.server.Settings.setting;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.server.AbstractConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
-import org.eclipse.jetty.server.handler.HandlerList;
-import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.session.SessionHandler;
-import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 /**
- * Simple Jetty Handler.
+ * Simple Jetty Handler. It does not handle sessions, if they are enabled it is wrapped by a
+ * session handler.
  *
  * @author Per Wendel
  */
-final class JettyHandler extends SessionHandler {
+final class JettyHandler extends AbstractHandler {
     private MatcherFilter filter;
 
     public JettyHandler (MatcherFilter filter) {
         this.filter = filter;
     }
 
-    @Override public void doHandle (
+    @Override public void handle (
         String target,
         Request baseRequest,
         HttpServletRequest request,
         HttpServletResponse response)
         throws IOException, ServletException {
 
-        filter.doFilter (request, response, null);
-        baseRequest.setHandled (filter.handled);
+        baseRequest.setHandled (
+            filter.handle (ServerRequest.of (request), ServerResponse.of (response)));
     }
 }
 
 /**
- * Sabina server backend implementation
+ * Sabina server backend implementation.
+ *
+ * <p>It is tuned with these settings (negative values let Jetty choose):
+ *
+ * <ul>
+ *     <li><code>sabina.jetty.sessions</code>: false by default, there is no session handler
+ *     (requests do not pay for session lookups). Applications using sessions must set it to
+ *     true.</li>
+ *     <li><code>sabina.jetty.acceptors</code> and <code>sabina.jetty.selectors</code>: connector
+ *     threads.</li>
+ *     <li><code>sabina.jetty.threads.min</code> and <code>sabina.jetty.threads.max</code>:
+ *     request threads pool size.</li>
+ *     <li><code>sabina.jetty.idle.timeout</code>: connections idle timeout (milliseconds).</li>
+ *     <li><code>sabina.jetty.output.buffer</code> and <code>sabina.jetty.output.aggregation</code>:
+ *     response buffer size and size under which writes are aggregated (bytes).</li>
+ * </ul>
  *
  * @author Per Wendel
  */
 final class JettyServer implements Backend {
 
     private static final String NAME = "Sabina";
+    private final MatcherFilter filter;
     private Handler handler;
     private Server server;
 
     public JettyServer (MatcherFilter handler) {
+        this.filter = handler;
         this.handler = new JettyHandler (handler);
     }
 
+    /**
+     * Sends the whole body with Jetty's output. Jetty writes the buffer (ie: a memory mapped
+     * file) to the connection without copying it to heap buffers.
+     *
+     * @param output Response output.
+     * @param content Complete body.
+     * @return False if the output is not Jetty's (ie: it is wrapped) and nothing was sent.
+     * @throws IOException If the response could not be written.
+     */
+    static boolean sendContent (OutputStream output, ByteBuffer content) throws IOException {
+        if (!(output instanceof HttpOutput))
+            return false;
+
+        ((HttpOutput)output).sendContent (content);
+        return true;
+    }
+
     public void startUp (
         String host, int port, String keystoreFile,
         String keystorePassword, String truststoreFile,
         String truststorePassword, String staticFilesFolder,
         String externalFilesFolder) {
 
+        final QueuedThreadPool threadPool = new QueuedThreadPool (
+            setting ("sabina.jetty.threads.max", 200), setting ("sabina.jetty.threads.min", 8));
+        threadPool.setName (NAME);
+        server = new Server (threadPool);
+
+        final HttpConfiguration httpConfiguration = new HttpConfiguration ();
+        httpConfiguration.setOutputBufferSize (setting ("sabina.jetty.output.buffer", 32768));
+        httpConfiguration.setOutputAggregationSize (
+            setting ("sabina.jetty.output.aggregation", 8192));
+        final HttpConnectionFactory http = new HttpConnectionFactory (httpConfiguration);
+
         ServerConnector connector;
 
         if (isEmpty (keystoreFile)) {
-            connector = createSocketConnector ();
+            connector = createSocketConnector (server, http);
         }
         else {
-            connector = createSecureSocketConnector (keystoreFile,
+            connector = createSecureSocketConnector (server, http, keystoreFile,
                 keystorePassword, truststoreFile, truststorePassword);
         }
 
-        // Set some timeout options to make debugging easier.
-        connector.setIdleTimeout (TimeUnit.HOURS.toMillis (1));
+        connector.setIdleTimeout (setting ("sabina.jetty.idle.timeout", 30000));
         connector.setSoLingerTime (-1);
         connector.setHost (host);
         connector.setPort (port);
 
-        server = connector.getServer ();
         server.setConnectors (new Connector[] { connector });
 
-        // Handle static file routes
-        if (isEmpty (staticFilesFolder) && isEmpty(externalFilesFolder)) {
-            server.setHandler (handler);
+        // Sessions must be enabled (if enabled, the session id is looked up on each request)
+        Handler routes = handler;
+        if (setting ("sabina.jetty.sessions", false)) {
+            SessionHandler sessionHandler = new SessionHandler ();
+            sessionHandler.setHandler (handler);
+            routes = sessionHandler;
         }
-        else {
-            List<Handler> handlersInList = new ArrayList<> ();
-            handlersInList.add (handler);
 
-            // Set static file location
-            setStaticFileLocationIfPresent (staticFilesFolder, handlersInList);
-
-            // Set external static file location
-            setExternalStaticFileLocationIfPresent (externalFilesFolder, handlersInList);
-
-            HandlerList handlers = new HandlerList ();
-            handlers
-                .setHandlers (handlersInList.toArray (new Handler[handlersInList.size ()]));
-            server.setHandler (handlers);
-        }
+        // Static files are served by the filter (after running the before filters)
+        filter.serveFiles (staticFilesFolder, externalFilesFolder);
+        server.setHandler (routes);
 
         try {
             System.out.println ("=== " + NAME + " has ignited ..."); // TODO Use logger
@@ -136,6 +174,7 @@ final class JettyServer implements Backend {
 
     public void shutDown () {
         System.out.print (">>> " + NAME + " shutting down...");
+        filter.closeFiles ();
         try {
             if (server != null)
                 server.stop ();
@@ -151,6 +190,8 @@ final class JettyServer implements Backend {
      * Creates a secure jetty socket connector. Keystore required, truststore
      * optional. If truststore not specifed keystore will be reused.
      *
+     * @param server Server owning the connector
+     * @param http HTTP connections factory
      * @param keystoreFile The keystore file location as string
      * @param keystorePassword the password for the keystore
      * @param truststoreFile the truststore file location as string, leave null to reuse
@@ -160,6 +201,7 @@ final class JettyServer implements Backend {
      * @return a secure socket connector
      */
     private static ServerConnector createSecureSocketConnector (
+        Server server, HttpConnectionFactory http,
         String keystoreFile,
         String keystorePassword, String truststoreFile,
         String truststorePassword) {
@@ -175,44 +217,28 @@ final class JettyServer implements Backend {
         if (truststorePassword != null) {
             sslContextFactory.setTrustStorePassword (truststorePassword);
         }
-        return new ServerConnector (new Server (), sslContextFactory);
+        return new ServerConnector (server, acceptors (), selectors (),
+            AbstractConnectionFactory.getFactories (sslContextFactory, http));
     }
 
     /**
      * Creates an ordinary, non-secured Jetty server connector.
      *
+     * @param server Server owning the connector
+     * @param http HTTP connections factory
      * @return - a server connector
      */
-    private static ServerConnector createSocketConnector () {
-        return new ServerConnector (new Server ());
+    private static ServerConnector createSocketConnector (
+        Server server, HttpConnectionFactory http) {
+
+        return new ServerConnector (server, acceptors (), selectors (), http);
     }
 
-    /**
-     * Sets static file location if present
-     */
-    private static void setStaticFileLocationIfPresent (
-        String staticFilesRoute, List<Handler> handlersInList) {
-        if (staticFilesRoute != null) {
-            ResourceHandler resourceHandler = new ResourceHandler ();
-            Resource staticResources = Resource.newClassPathResource (staticFilesRoute);
-            resourceHandler.setBaseResource (staticResources);
-            resourceHandler.setWelcomeFiles (new String[] { "index.html" });
-            handlersInList.add (resourceHandler);
-        }
+    private static int acceptors () {
+        return setting ("sabina.jetty.acceptors", -1);
     }
 
-    /**
-     * Sets external static file location if present
-     */
-    private static void setExternalStaticFileLocationIfPresent (
-        String externalFilesRoute, List<Handler> handlersInList) {
-        if (externalFilesRoute != null) {
-            ResourceHandler externalResourceHandler = new ResourceHandler ();
-            Resource externalStaticResources =
-                Resource.newResource (new File (externalFilesRoute));
-            externalResourceHandler.setBaseResource (externalStaticResources);
-            externalResourceHandler.setWelcomeFiles (new String[] { "index.html" });
-            handlersInList.add (externalResourceHandler);
-        }
+    private static int selectors () {
+        return setting ("sabina.jetty.selectors", -1);
     }
 }
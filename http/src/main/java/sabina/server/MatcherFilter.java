@@ -14,8 +14,9 @@
 
 package sabina.server;
 
-import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Logger.getLogger;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
@@ -24,6 +25,10 @@ import static sabina.HttpMethod.*;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 import javax.servlet.Filter;
@@ -32,9 +37,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import sabina.*;
-import sabina.route.RouteMatch;
+import sabina.route.PathSegments;
+import sabina.route.RequestHeaders;
 import sabina.route.RouteMatcher;
 import sabina.route.RouteMatcherFactory;
+import sabina.route.RoutePlan;
 
 /**
  * Filter for matching of filters and routes.
@@ -44,18 +51,25 @@ import sabina.route.RouteMatcherFactory;
 public class MatcherFilter implements Filter, Router {
     private static final Logger LOG = getLogger (MatcherFilter.class.getName ());
 
-    private static final String
-        INTERNAL_ERROR = "<html><body><h2>500 Internal Error</h2></body></html>",
-        NOT_FOUND =
+    /* Built-in error pages (encoded once) */
+    private static final Body
+        INTERNAL_ERROR = Body.of ("<html><body><h2>500 Internal Error</h2></body></html>"),
+        NOT_FOUND = Body.of (
             "<html><body>" +
-                "<h2>404 Not found</h2>The requested route [%s] has not been mapped in Sabina" +
-                "</body></html>";
+                "<h2>404 Not found</h2>The requested route has not been mapped in Sabina" +
+                "</body></html>");
 
     public final RouteMatcher routeMatcher;
     public final boolean hasOtherHandlers;
     public final String backend;
+    /** Executor running route handlers (null to run them in the container's thread). */
+    public final Executor executor;
+    /** Headers added to all responses. */
+    public final DefaultHeaders headers;
 
-    boolean handled;
+    private final Compression compression = Compression.fromSettings ();
+    /** Static files served instead of routes (null if there are no static folders). */
+    private volatile StaticFiles files;
 
     /**
      * TODO Needed by Undertow to instantiate the filter.
@@ -63,6 +77,8 @@ public class MatcherFilter implements Filter, Router {
     public MatcherFilter () {
         routeMatcher = RouteMatcherFactory.create ();
         backend = "undertow";
+        executor = null;
+        headers = new DefaultHeaders ();
         hasOtherHandlers = false;
     }
 
@@ -70,15 +86,42 @@ public class MatcherFilter implements Filter, Router {
      * Constructor.
      *
      * @param routeMatcher The route matcher.
-     * @param backend TODO .
+     * @param backend Name of the backend running the filter ('jetty', 'undertow',
+     * 'undertow-native' or 'netty'). Some write paths depend on it (ie: Jetty sends files
+     * without copies and Undertow needs the 404 status for requests left to other handlers).
      * @param hasOtherHandlers If true, do nothing if request is not consumed by Sabina in order
      * to let others handlers process the request.
      */
     public MatcherFilter (
         RouteMatcher routeMatcher, String backend, boolean hasOtherHandlers) {
 
+        this (routeMatcher, backend, null, new DefaultHeaders (), hasOtherHandlers);
+    }
+
+    /**
+     * Constructor used by {@link BackendFactory} (backends are created there).
+     *
+     * @param routeMatcher The route matcher.
+     * @param backend Name of the backend running the filter ('jetty', 'undertow',
+     * 'undertow-native' or 'netty'). Some write paths depend on it (ie: Jetty sends files
+     * without copies and Undertow needs the 404 status for requests left to other handlers).
+     * @param executor Executor running the route handlers (null to run them in the container's
+     * thread). Handlers are dispatched to it only if the request supports asynchronous mode.
+     * @param headers Headers added to all responses.
+     * @param hasOtherHandlers If true, do nothing if request is not consumed by Sabina in order
+     * to let others handlers process the request.
+     */
+    public MatcherFilter (
+        RouteMatcher routeMatcher,
+        String backend,
+        Executor executor,
+        DefaultHeaders headers,
+        boolean hasOtherHandlers) {
+
         this.routeMatcher = routeMatcher;
         this.backend = backend;
+        this.executor = executor;
+        this.headers = headers;
         this.hasOtherHandlers = hasOtherHandlers;
     }
 
@@ -87,42 +130,187 @@ public class MatcherFilter implements Filter, Router {
         final ServletResponse servletResponse,
         final FilterChain chain) throws IOException, ServletException {
 
+        handle (
+            ServerRequest.of ((HttpServletRequest)servletRequest),
+            ServerResponse.of ((HttpServletResponse)servletResponse));
+    }
+
+    /**
+     * Runs the filters and the route matching a request. It is used by the servlet backends
+     * and by the backends not based on servlets.
+     *
+     * @param httpReq The request.
+     * @param httpRes The response.
+     * @return True if the request has been handled (false to let other handlers process it).
+     * @throws IOException If the response could not be written.
+     */
+    public boolean handle (final ServerRequest httpReq, final ServerResponse httpRes)
+        throws IOException {
+
+        final PathSegments path = PathSegments.of (httpReq.uri ());
+        return handle (httpReq, httpRes, path, plan (httpReq, path));
+    }
+
+    /**
+     * Runs the filters and the route of a request already matched (see {@link #plan}).
+     *
+     * @param httpReq The request.
+     * @param httpRes The response.
+     * @param path The request path segments.
+     * @param plan The route plan of the request.
+     * @return True if the request has been handled (false to let other handlers process it).
+     * @throws IOException If the response could not be written.
+     */
+    boolean handle (
+        final ServerRequest httpReq,
+        final ServerResponse httpRes,
+        final PathSegments path,
+        final RoutePlan plan) throws IOException {
+
         boolean loggable = LOG.isLoggable (FINE);
         long t = loggable? currentTimeMillis () : 0;
 
-        final HttpServletRequest httpReq = (HttpServletRequest)servletRequest;
-        final HttpServletResponse httpRes = (HttpServletResponse)servletResponse;
+        final String uri = httpReq.uri ();
+        final String httpMethodStr = httpReq.method ();
+        final RequestContext context = new RequestContext (httpReq, httpRes, path);
 
-        final String uri = httpReq.getRequestURI ();
-        final String httpMethodStr = httpReq.getMethod ();
+        Object bodyContent = null;
 
-        String bodyContent = null;
+        headers.write (httpRes);
 
         try {
-            bodyContent = onFilter (BEFORE, httpReq, httpRes, uri, null);
+            bodyContent = onFilter (plan.before (path), context, null);
+
+            // Static files are served instead of the route (after the filters run for them)
+            final StaticFiles staticFiles = files;
+            final StaticFiles.StaticFile file =
+                staticFiles != null? staticFiles.find (httpReq) : null;
+            if (file != null) {
+                onFilter (plan.after (path), context, bodyContent);
+                staticFiles.serve (file, httpReq, httpRes);
+                return true;
+            }
 
             final HttpMethod httpMethod = HttpMethod.valueOf (httpMethodStr);
-            RouteMatch match = routeMatcher.findTarget (httpMethod, uri);
+            final RequestHeaders requestHeaders = httpReq::header;
 
-            if (match == null && httpMethod == HEAD && bodyContent == null) {
+            final Route target = plan.target;
+
+            if (target != null) {
+                final String mediaType = target.conditions.negotiate (requestHeaders);
+                if (mediaType != null)
+                    httpRes.contentType (mediaType);
+            }
+
+            if (target == null && httpMethod == HEAD && bodyContent == null) {
                 // See if get is mapped to provide default head mapping
-                RouteMatch requestedRouteTarget = routeMatcher.findTarget (GET, uri);
-                bodyContent = requestedRouteTarget != null? "" : null;
+                RoutePlan getPlan = routeMatcher.findPlan (GET, path, requestHeaders);
+                bodyContent = getPlan.target != null? "" : null;
             }
 
-            if (match != null && match.entry != null) {
-                bodyContent = handleTargetRoute (httpReq, httpRes, bodyContent, match, match.entry);
+            if (target != null) {
+                final Request request = target.isFilter ()? null : context.request (target);
+                final Object previousContent = bodyContent;
+                bodyContent = executor != null && request != null && httpReq.asyncSupported ()?
+                    dispatch (request, target) :
+                    handleTargetRoute (httpRes, bodyContent, request, target);
+
+                if (bodyContent instanceof CompletionStage) {
+                    final CompletionStage<?> stage = (CompletionStage<?>)bodyContent;
+                    if (httpReq.asyncSupported ()) {
+                        completeAsync (stage, context, previousContent, request, plan);
+                        return true;
+                    }
+                    bodyContent = await (stage, httpRes, previousContent, request);
+                }
             }
 
-            bodyContent = onFilter (AFTER, httpReq, httpRes, uri, bodyContent);
+            bodyContent = onFilter (plan.after (path), context, bodyContent);
         }
         catch (EndException e) {
             if (loggable)
                 LOG.fine ("halt performed");
-            httpRes.setStatus (e.statusCode);
-            String haltBody = e.body;
-            bodyContent = (haltBody != null)? haltBody : "";
+            bodyContent = halt (e, httpRes);
+        }
+
+        context.handled = writeBody (bodyContent, context, hasOtherHandlers);
+
+        // TODO Merge logs and take care of method flow to log always
+        if (loggable) {
+            LOG.fine ("httpMethod:" + httpMethodStr + ", uri: " + uri);
+            LOG.fine ("Time for request: " + (currentTimeMillis () - t));
+        }
+
+        return context.handled;
+    }
+
+    /*
+     * The request is released from the container thread and the stage completion finishes it
+     * (after filters and body writing) the same way the synchronous path does.
+     */
+    private void completeAsync (
+        final CompletionStage<?> stage,
+        final RequestContext context,
+        final Object previousContent,
+        final Request request,
+        final RoutePlan plan) {
+
+        final ServerResponse httpRes = context.serverResponse;
+        final Runnable complete = context.serverRequest.startAsync ();
+
+        stage.whenComplete ((result, error) -> {
+            try {
+                Object bodyContent;
+                try {
+                    bodyContent = handleResult (httpRes, previousContent, request, result, error);
+                    bodyContent = onFilter (plan.after (context.path), context, bodyContent);
+                }
+                catch (EndException e) {
+                    bodyContent = halt (e, httpRes);
+                }
+                // Other handlers can not process the request once it is asynchronous
+                writeBody (bodyContent, context, false);
+            }
+            catch (Exception e) {
+                LOG.severe (e.getMessage ());
+            }
+            finally {
+                complete.run ();
+            }
+        });
+    }
+
+    /*
+     * Used when the container does not support asynchronous requests.
+     */
+    private Object await (
+        final CompletionStage<?> stage,
+        final ServerResponse httpRes,
+        final Object previousContent,
+        final Request request) {
+
+        try {
+            final Object result = stage.toCompletableFuture ().join ();
+            return handleResult (httpRes, previousContent, request, result, null);
         }
+        catch (CompletionException | CancellationException e) {
+            return handleResult (httpRes, previousContent, request, null, e);
+        }
+    }
+
+    private static Object halt (EndException e, ServerResponse httpRes) {
+        httpRes.status (e.statusCode);
+        String haltBody = e.body;
+        return (haltBody != null)? haltBody : "";
+    }
+
+    /*
+     * Returns true if the request has been handled (false to let other handlers process it).
+     */
+    private boolean writeBody (
+        Object bodyContent, RequestContext context, boolean otherHandlers) throws IOException {
+
+        final ServerResponse httpRes = context.serverResponse;
 
         // If redirected and content is null set to empty string to not throw NotConsumedException
 //        if (bodyContent == null && res.isRedirected())
@@ -132,89 +320,133 @@ public class MatcherFilter implements Filter, Router {
 
         boolean consumed = bodyContent != null;
 
-        if (!consumed && hasOtherHandlers) {
-            handled = false;
+        if (!consumed && otherHandlers) {
 			if (backend.equals ("undertow"))
-				httpRes.setStatus (SC_NOT_FOUND); // TODO Only for Undertow
-            return;
+				httpRes.status (SC_NOT_FOUND); // TODO Only for Undertow
+            return false;
         }
 
         if (!consumed) {
-            httpRes.setStatus (SC_NOT_FOUND);
-            bodyContent = format (NOT_FOUND, uri);
-            consumed = true;
+            if (LOG.isLoggable (FINE))
+                LOG.fine ("Route not mapped: " + context.serverRequest.uri ());
+            httpRes.status (SC_NOT_FOUND);
+            bodyContent = NOT_FOUND;
         }
 
         // Write body content
-        if (consumed && !httpRes.isCommitted ()) {
-            if (httpRes.getContentType () == null) {
-                httpRes.setContentType ("text/html; charset=utf-8");
+        if (!httpRes.committed ()) {
+            if (httpRes.contentType () == null) {
+                httpRes.contentType (BodyWriter.contentType (bodyContent));
+            }
+            final CompressedResponse compressed = compress (context);
+            if (compressed == null) {
+                BodyWriter.write (bodyContent, httpRes, backend);
+            }
+            else {
+                try {
+                    BodyWriter.write (bodyContent, compressed, backend);
+                }
+                finally {
+                    compressed.finish ();
+                }
             }
-            httpRes.getOutputStream ().write (bodyContent.getBytes ("utf-8"));
         }
 
-        // TODO this is an instance variable take care of multi-threading!
-        handled = true;
+        return true;
+    }
 
-        // TODO Merge logs and take care of method flow to log always
-        if (loggable) {
-            LOG.fine ("httpMethod:" + httpMethodStr + ", uri: " + uri);
-            LOG.fine ("Time for request: " + (currentTimeMillis () - t));
-        }
+    /*
+     * Returns the compressed response to write the body or null if it is not compressed.
+     */
+    private CompressedResponse compress (RequestContext context) {
+        final ServerResponse httpRes = context.serverResponse;
+        if (!compression.enabled
+            || !context.compress ()
+            || httpRes.header ("Content-Encoding") != null
+            || !Compression.compressible (httpRes.contentType ()))
+            return null;
+
+        // Caches must not send the compressed body to clients that do not accept it (or the
+        // other way around) even if this one is sent uncompressed
+        httpRes.addHeader ("Vary", "Accept-Encoding");
+        final String encoding =
+            Compression.encoding (context.serverRequest.header ("Accept-Encoding"));
+        return encoding == null? null : new CompressedResponse (httpRes, compression, encoding);
     }
 
+    /*
+     * Runs the handler in the executor, stages returned by the handler are flattened.
+     */
     @SuppressWarnings ("unchecked")
-    private String handleTargetRoute (
-        HttpServletRequest aHttpReq, HttpServletResponse aHttpRes, String aBodyContent,
-        RouteMatch aMatch, Route aTarget) {
+    private CompletionStage<?> dispatch (final Request request, final Route target) {
+        return supplyAsync (() -> target.handler.apply (request), executor)
+            .thenCompose (result -> result instanceof CompletionStage?
+                (CompletionStage<Object>)result : completedFuture (result));
+    }
 
-        Request request = null;
-        try {
-            String result = null;
-            if (!aTarget.isFilter ()) {
-                request = new Request (aMatch, aHttpReq, aHttpRes);
+    private Object handleTargetRoute (
+        ServerResponse aHttpRes, Object aBodyContent, Request aRequest, Route aTarget) {
 
-                Object element = aTarget.handler.apply (request);
-                result = element != null? element.toString () : null;
-            }
-            if (result != null) {
-                aBodyContent = result;
-            }
+        try {
+            Object element = aRequest != null? aTarget.handler.apply (aRequest) : null;
+            // Asynchronous results are completed later (by the caller)
+            return element instanceof CompletionStage?
+                element : handleResult (aHttpRes, aBodyContent, aRequest, element, null);
         }
         catch (EndException hEx) {
             throw hEx;
         }
         catch (Exception e) {
-            BiConsumer<Exception, Request> handler =
-                (BiConsumer<Exception, Request>)routeMatcher.findHandler (e.getClass ());
-            if (handler != null && request != null) {
-                handler.accept (e, request);
-            }
-            else {
-                LOG.severe (e.getMessage ());
-                aHttpRes.setStatus (SC_INTERNAL_SERVER_ERROR);
-                aBodyContent = INTERNAL_ERROR;
-            }
+            return handleResult (aHttpRes, aBodyContent, aRequest, null, e);
         }
-
-        return aBodyContent;
     }
 
     /*
-     * After and before are the same method except for HttpMethod.after|before
+     * Handles the value (or the error) returned by a route handler, halts are rethrown and
+     * stage errors are unwrapped before looking for the exception handler.
      */
-    private String onFilter (
-        final HttpMethod method,
-        final HttpServletRequest httpRequest,
-        final HttpServletResponse httpResponse,
-        final String uri,
-        String bodyContent) {
+    @SuppressWarnings ("unchecked")
+    private Object handleResult (
+        ServerResponse aHttpRes, Object aBodyContent, Request aRequest,
+        Object aResult, Throwable aError) {
+
+        if (aError == null) {
+            // Binary and streamed results are written as they are (not as strings)
+            if (aResult == null)
+                return aBodyContent;
+            return BodyWriter.isStreamed (aResult)? aResult : aResult.toString ();
+        }
+
+        Throwable cause = aError;
+        if (cause instanceof CompletionException && cause.getCause () != null)
+            cause = cause.getCause ();
+        if (cause instanceof EndException)
+            throw (EndException)cause;
+
+        Exception e = cause instanceof Exception? (Exception)cause : new RuntimeException (cause);
+        BiConsumer<Exception, Request> handler =
+            (BiConsumer<Exception, Request>)routeMatcher.findHandler (e.getClass ());
+        if (handler != null && aRequest != null) {
+            handler.accept (e, aRequest);
+            return aBodyContent;
+        }
 
-        final List<RouteMatch> matchSet = routeMatcher.findTargets (method, uri);
+        LOG.severe (e.getMessage ());
+        aHttpRes.status (SC_INTERNAL_SERVER_ERROR);
+        return INTERNAL_ERROR;
+    }
+
+    /*
+     * After and before are the same method except for the filters chain (from the plan)
+     */
+    private Object onFilter (
+        final List<Route> filters, final RequestContext context, Object bodyContent) {
 
-        for (RouteMatch filterMatch : matchSet) {
-            final Request request = new Request (filterMatch, httpRequest, httpResponse);
-            filterMatch.entry.handler.apply (request);
+        for (Route filter : filters) {
+            final Request request = context.request (filter);
+            // Only bodies set by this filter replace the content
+            request.response.body (null);
+            filter.handler.apply (request);
 
             final String bodyAfterFilter = request.response.body ();
             if (bodyAfterFilter != null)
@@ -224,6 +456,72 @@ public class MatcherFilter implements Filter, Router {
         return bodyContent;
     }
 
+    /**
+     * Matches a request against the routes. Backends checking the plan before handling the
+     * request pass it to {@link #handle(ServerRequest, ServerResponse, PathSegments, RoutePlan)}
+     * to match it only once.
+     *
+     * @param request The request.
+     * @param path The request path segments.
+     * @return The route plan of the request.
+     * @throws IllegalArgumentException If the request method is not supported.
+     */
+    RoutePlan plan (ServerRequest request, PathSegments path) {
+        final HttpMethod method = HttpMethod.valueOf (request.method ());
+        return routeMatcher.findPlan (method, path, request::header);
+    }
+
+    /**
+     * Checks if a request can be handled in the thread that read it (the I/O thread of native
+     * backends): its route is non blocking, no filter applies, it is not a static file and
+     * compression is disabled (compressed bodies are written through blocking streams).
+     *
+     * @param request The request.
+     * @param path The request path segments.
+     * @param plan The route plan of the request.
+     * @return True if handling the request does not block.
+     */
+    boolean nonBlocking (ServerRequest request, PathSegments path, RoutePlan plan) {
+        final StaticFiles staticFiles = files;
+        if (compression.enabled || (staticFiles != null && staticFiles.indexed (request.uri ())))
+            return false;
+
+        final Route target = plan.target;
+        return target != null
+            && target.nonBlocking
+            && plan.before (path).isEmpty ()
+            && plan.after (path).isEmpty ();
+    }
+
+    /**
+     * Serves the files of the given folders (called by the backends on start up).
+     *
+     * @param resourcesFolder Classpath folder (can be empty).
+     * @param filesFolder External folder (can be empty).
+     */
+    void serveFiles (String resourcesFolder, String filesFolder) {
+        closeFiles ();
+        files = StaticFiles.create (backend, resourcesFolder, filesFolder);
+    }
+
+    /**
+     * Shares the static files of another filter (for backends creating filter instances).
+     *
+     * @param filter Filter to copy the static files from.
+     */
+    void serveFiles (MatcherFilter filter) {
+        files = filter.files;
+    }
+
+    /**
+     * Releases the static files resources (called by the backends on shut down).
+     */
+    void closeFiles () {
+        final StaticFiles staticFiles = files;
+        if (staticFiles != null)
+            staticFiles.close ();
+    }
+
     @Override public RouteMatcher getMatcher () { return routeMatcher; }
 
     @Override public void init (FilterConfig filterConfig) {
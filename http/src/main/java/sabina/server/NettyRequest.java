@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.COOKIE;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.*;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpSession;
+
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.CookieDecoder;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+
+/**
+ * Request of the Netty backend (the request content is aggregated before routing).
+ *
+ * <p>Parameters are taken from the query string only and sessions are not supported. Requests
+ * can not be completed asynchronously: responses to pipelined requests have to be sent in
+ * order, so stages returned by handlers are waited for in the handling thread.
+ *
+ * @author jamming
+ */
+final class NettyRequest implements ServerRequest {
+    private final HttpRequest request;
+    private final Channel channel;
+    private final boolean secure;
+
+    private QueryStringDecoder query;
+    private Map<String, Object> attributes;
+
+    NettyRequest (HttpRequest request, Channel channel, boolean secure) {
+        this.request = request;
+        this.channel = channel;
+        this.secure = secure;
+    }
+
+    private QueryStringDecoder query () {
+        if (query == null)
+            query = new QueryStringDecoder (request.getUri ());
+        return query;
+    }
+
+    @Override public String method () { return request.getMethod ().getName (); }
+    @Override public String scheme () { return secure? "https" : "http"; }
+
+    /** Raw (not decoded) request path, like the servlet 'getRequestURI'. */
+    @Override public String uri () {
+        String uri = request.getUri ();
+        int question = uri.indexOf ('?');
+        return question == -1? uri : uri.substring (0, question);
+    }
+
+    @Override public String url () {
+        return scheme () + "://" + header (HttpHeaders.Names.HOST) + uri ();
+    }
+    @Override public String protocol () { return request.getProtocolVersion ().getText (); }
+    @Override public boolean secure () { return secure; }
+
+    @Override public String host () {
+        String host = HttpHeaders.getHost (request, "");
+        int colon = host.lastIndexOf (':');
+        return colon > host.lastIndexOf (']')? host.substring (0, colon) : host;
+    }
+
+    @Override public int port () {
+        return ((InetSocketAddress)channel.getLocalAddress ()).getPort ();
+    }
+
+    @Override public String remoteAddress () {
+        return ((InetSocketAddress)channel.getRemoteAddress ()).getAddress ().getHostAddress ();
+    }
+
+    @Override public String pathInfo () { return uri (); }
+    @Override public String servletPath () { return ""; }
+    @Override public String contextPath () { return ""; }
+
+    @Override public String queryString () {
+        String uri = request.getUri ();
+        int question = uri.indexOf ('?');
+        return question == -1? null : uri.substring (question + 1);
+    }
+
+    @Override public String parameter (String name) {
+        List<String> values = query ().getParameters ().get (name);
+        return values == null || values.isEmpty ()? null : values.get (0);
+    }
+
+    @Override public Set<String> parameterNames () {
+        return query ().getParameters ().keySet ();
+    }
+
+    @Override public String header (String name) { return request.headers ().get (name); }
+
+    @Override public Set<String> headerNames () {
+        return new TreeSet<> (request.headers ().names ());
+    }
+
+    @Override public String contentType () { return header (CONTENT_TYPE); }
+
+    @Override public int contentLength () {
+        return (int)HttpHeaders.getContentLength (request, -1);
+    }
+
+    @Override public InputStream inputStream () {
+        return new ChannelBufferInputStream (request.getContent ());
+    }
+
+    @Override public Object attribute (String name) {
+        return attributes == null? null : attributes.get (name);
+    }
+
+    @Override public void attribute (String name, Object value) {
+        if (attributes == null)
+            attributes = new HashMap<> ();
+        attributes.put (name, value);
+    }
+
+    @Override public Set<String> attributeNames () {
+        return attributes == null? new HashSet<> () : new HashSet<> (attributes.keySet ());
+    }
+
+    @Override public Cookie[] cookies () {
+        String header = header (COOKIE);
+        if (header == null)
+            return null;
+
+        List<Cookie> result = new ArrayList<> ();
+        for (org.jboss.netty.handler.codec.http.Cookie c : new CookieDecoder ().decode (header))
+            result.add (new Cookie (c.getName (), c.getValue ()));
+        return result.toArray (new Cookie[result.size ()]);
+    }
+
+    @Override public HttpSession session (boolean create) {
+        throw new UnsupportedOperationException ("Sessions not supported by 'netty'");
+    }
+
+    @Override public boolean forwarded () { return false; }
+
+    @Override public boolean asyncSupported () { return false; }
+
+    @Override public Runnable startAsync () {
+        throw new UnsupportedOperationException ("Asynchronous requests not supported by 'netty'");
+    }
+}
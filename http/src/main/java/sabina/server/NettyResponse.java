@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.jboss.netty.buffer.ChannelBuffers.wrappedBuffer;
+import static org.jboss.netty.channel.ChannelFutureListener.CLOSE;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.*;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.isContentLengthSet;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.setContentLength;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.valueOf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Date;
+import javax.servlet.http.Cookie;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.DefaultFileRegion;
+import org.jboss.netty.handler.codec.http.*;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.stream.ChunkedNioFile;
+
+/**
+ * Response of the Netty backend. Complete bodies are kept in a buffer and the whole response
+ * is written when the request handling ends. Streamed bodies are buffered up to
+ * {@link #CHUNK_SIZE} bytes: bigger ones are sent in HTTP chunks as they are written (the
+ * handler thread waits while the channel is not writable, so memory use does not depend on
+ * the body size). Files are sent as file regions (or read in chunks on secure channels).
+ *
+ * @author jamming
+ */
+final class NettyResponse implements ServerResponse {
+    static final int CHUNK_SIZE = 8 * 1024;
+
+    /** Body stream sending a chunk each time its buffer fills. */
+    private final class ChunkStream extends OutputStream {
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+
+        @Override public void write (int b) throws IOException {
+            if (count == buffer.length)
+                flush ();
+            buffer[count++] = (byte)b;
+        }
+
+        @Override public void write (byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length)
+                    flush ();
+                int copied = Math.min (length, buffer.length - count);
+                System.arraycopy (bytes, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        /* The buffer is handed to the channel (not copied), a new one is used afterwards */
+        @Override public void flush () {
+            if (count == 0)
+                return;
+
+            ChannelBuffer chunk = wrappedBuffer (buffer, 0, count);
+            buffer = new byte[CHUNK_SIZE];
+            count = 0;
+            writeChunk (chunk);
+        }
+
+        /* Bodies not bigger than a chunk are sent with the response (with their length) */
+        ChannelBuffer remaining () {
+            return count == 0? null : wrappedBuffer (buffer, 0, count);
+        }
+    }
+
+    private final Channel channel;
+    private final HttpResponse response;
+    private boolean keepAlive;
+
+    private ChannelBuffer content;
+    private ChunkStream stream;
+    private ChannelFuture lastWrite;
+    /* Set once the response head is sent (the body goes in chunks or as a file afterwards) */
+    private boolean started;
+    private boolean committed;
+
+    /**
+     * Creates the response to a request.
+     *
+     * @param channel Channel of the request.
+     * @param version HTTP version of the request.
+     * @param keepAlive If false, the connection is closed after writing the response (and the
+     *  client is told so with 'Connection: close').
+     */
+    NettyResponse (Channel channel, HttpVersion version, boolean keepAlive) {
+        this.channel = channel;
+        this.response = new DefaultHttpResponse (version, HttpResponseStatus.OK);
+        this.keepAlive = keepAlive;
+    }
+
+    @Override public void status (int status) { response.setStatus (valueOf (status)); }
+    @Override public String contentType () { return response.headers ().get (CONTENT_TYPE); }
+
+    @Override public void contentType (String contentType) {
+        response.headers ().set (CONTENT_TYPE, contentType);
+    }
+
+    @Override public void contentLength (long length) { setContentLength (response, length); }
+
+    @Override public String header (String name) { return response.headers ().get (name); }
+
+    @Override public void addHeader (String name, String value) {
+        response.headers ().add (name, value);
+    }
+
+    @Override public void setHeader (String name, String value) {
+        response.headers ().set (name, value);
+    }
+
+    @Override public void addDateHeader (String name, long date) {
+        response.headers ().add (name, new Date (date));
+    }
+
+    @Override public void addCookie (Cookie cookie) {
+        DefaultCookie result = new DefaultCookie (cookie.getName (), cookie.getValue ());
+        if (cookie.getPath () != null && !cookie.getPath ().isEmpty ())
+            result.setPath (cookie.getPath ());
+        if (cookie.getMaxAge () >= 0)
+            result.setMaxAge (cookie.getMaxAge ());
+        result.setSecure (cookie.getSecure ());
+        response.headers ().add (SET_COOKIE, ServerCookieEncoder.encode (result));
+    }
+
+    @Override public void redirect (String location) {
+        response.setStatus (HttpResponseStatus.FOUND);
+        response.headers ().set (LOCATION, location);
+    }
+
+    @Override public void sendError (int status) { status (status); }
+
+    @Override public boolean committed () { return committed; }
+
+    @Override public OutputStream outputStream () {
+        if (stream == null)
+            stream = new ChunkStream ();
+        return stream;
+    }
+
+    /** The buffer is wrapped (not copied), it must not be modified after this call. */
+    @Override public void send (ByteBuffer buffer) {
+        if (started) {
+            writeChunk (wrappedBuffer (buffer));
+            return;
+        }
+
+        if (stream != null) {
+            // Keep the order of the bytes written to the stream before
+            stream.flush ();
+            writeChunk (wrappedBuffer (buffer));
+            return;
+        }
+
+        content = content == null?
+            wrappedBuffer (buffer) : wrappedBuffer (content, wrappedBuffer (buffer));
+    }
+
+    /**
+     * Sends a region of a file as the whole body if the response is a Netty one and nothing
+     * has been written yet. The file is sent as a region (without copies) or read in chunks if
+     * the channel is secure (the region would skip the encryption).
+     *
+     * @param response Backend response (the content length must be already set).
+     * @param file File to send.
+     * @param position First byte of the region.
+     * @param count Region length.
+     * @return True if the file was sent (false to write it with the generic path).
+     * @throws IOException If the file can not be opened.
+     */
+    static boolean sendFile (ServerResponse response, Path file, long position, long count)
+        throws IOException {
+
+        if (!(response instanceof NettyResponse))
+            return false;
+
+        final NettyResponse nettyResponse = (NettyResponse)response;
+        if (nettyResponse.started || nettyResponse.stream != null || nettyResponse.content != null)
+            return false;
+
+        nettyResponse.sendFile (file, position, count);
+        return true;
+    }
+
+    private void sendFile (Path file, long position, long count) throws IOException {
+        final FileChannel fileChannel = FileChannel.open (file, READ);
+        try {
+            final Object body = channel.getPipeline ().get (SslHandler.class) == null?
+                new DefaultFileRegion (fileChannel, position, count, true) :
+                new ChunkedNioFile (fileChannel, position, count, CHUNK_SIZE);
+            start (false);
+            lastWrite = channel.write (body);
+        }
+        catch (IOException | RuntimeException e) {
+            fileChannel.close ();
+            throw e;
+        }
+    }
+
+    /*
+     * Sends the response head. Bodies of unknown length are sent chunked (HTTP/1.1) or until
+     * the connection is closed (HTTP/1.0).
+     */
+    private void start (boolean chunked) {
+        started = true;
+        committed = true;
+
+        if (chunked && !isContentLengthSet (response)) {
+            if (HttpVersion.HTTP_1_1.equals (response.getProtocolVersion ()))
+                response.headers ().set (TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+            else
+                keepAlive = false;
+        }
+        response.setChunked (chunked);
+        lastWrite = channel.write (head ());
+    }
+
+    private void writeChunk (ChannelBuffer chunk) {
+        if (!started) {
+            start (true);
+            if (content != null)
+                channel.write (new DefaultHttpChunk (content));
+        }
+
+        lastWrite = channel.write (new DefaultHttpChunk (chunk));
+        // The handler waits for slow clients instead of queueing the whole body
+        if (!channel.isWritable ())
+            lastWrite.awaitUninterruptibly ();
+    }
+
+    private HttpResponse head () {
+        if (!keepAlive)
+            response.headers ().set (CONNECTION, HttpHeaders.Values.CLOSE);
+        else if (HttpVersion.HTTP_1_0.equals (response.getProtocolVersion ()))
+            response.headers ().set (CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+        return response;
+    }
+
+    /**
+     * Ends the response: writes it to the channel if nothing was sent yet or the last chunk
+     * otherwise. It can only be called once.
+     *
+     * @return The future of the last write operation.
+     */
+    ChannelFuture end () {
+        if (started) {
+            if (stream != null)
+                stream.flush ();
+            if (response.isChunked ())
+                lastWrite = channel.write (HttpChunk.LAST_CHUNK);
+        }
+        else {
+            committed = true;
+
+            final ChannelBuffer remaining = stream == null? null : stream.remaining ();
+            if (remaining != null)
+                content = content == null? remaining : wrappedBuffer (content, remaining);
+            if (content != null)
+                response.setContent (content);
+            if (!isContentLengthSet (response))
+                setContentLength (response, response.getContent ().readableBytes ());
+            lastWrite = channel.write (head ());
+        }
+
+        if (!keepAlive)
+            lastWrite.addListener (CLOSE);
+        return lastWrite;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static co.there4.bali.Strings.isEmpty;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.logging.Logger.getLogger;
+import static org.jboss.netty.channel.Channels.pipeline;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.isKeepAlive;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
+import static sabina.server.Settings.setting;
+import static sabina.server.UndertowServer.createSecureSocketContext;
+
+import java.net.InetSocketAddress;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.jboss.netty.channel.*;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.*;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.stream.ChunkedWriteHandler;
+
+/**
+ * Netty backend. Requests are decoded in the I/O threads and routed in a thread pool (handlers
+ * can block). The pool keeps the order of the events of each channel, so responses to
+ * pipelined requests are written in the order the requests arrived.
+ *
+ * <p>Bodies bigger than a chunk are streamed with chunked encoding and files are sent as file
+ * regions (see {@link NettyResponse}).
+ *
+ * <p>Static files are served by the filter. Sessions are not supported. The settings read by
+ * this backend are: 'sabina.netty.io.threads', 'sabina.netty.threads' and
+ * 'sabina.netty.max.content'.
+ *
+ * @author jamming
+ */
+@ChannelHandler.Sharable
+final class NettyServer extends SimpleChannelUpstreamHandler implements Backend {
+    private static final Logger LOG = getLogger (NettyServer.class.getName ());
+
+    private final MatcherFilter filter;
+    private final ChannelGroup channels = new DefaultChannelGroup ("sabina");
+
+    private ServerBootstrap bootstrap;
+    private ExecutionHandler executionHandler;
+    private boolean secure;
+
+    NettyServer (MatcherFilter aFilter) {
+        filter = aFilter;
+    }
+
+    @Override public void startUp (
+        String host, int port,
+        String keystoreFile, String keystorePassword,
+        String truststoreFile, String truststorePassword,
+        String staticFilesFolder, String externalFilesFolder) {
+
+        filter.serveFiles (staticFilesFolder, externalFilesFolder);
+
+        final SSLContext sslContext = isEmpty (keystoreFile)?
+            null :
+            createSecureSocketContext (
+                keystoreFile, keystorePassword, truststoreFile, truststorePassword);
+        final int ioThreadsSetting = setting ("sabina.netty.io.threads", 0);
+        final int ioThreads = ioThreadsSetting > 0?
+            ioThreadsSetting : Runtime.getRuntime ().availableProcessors ();
+        final int maxContent = setting ("sabina.netty.max.content", 1024 * 1024);
+
+        secure = sslContext != null;
+        executionHandler = new ExecutionHandler (
+            new OrderedMemoryAwareThreadPoolExecutor (setting ("sabina.netty.threads", 200), 0, 0)
+        );
+
+        bootstrap = new ServerBootstrap (new NioServerSocketChannelFactory (
+            newCachedThreadPool (), newCachedThreadPool (), ioThreads));
+        bootstrap.setOption ("child.tcpNoDelay", true);
+        bootstrap.setOption ("child.keepAlive", true);
+        bootstrap.setOption ("child.bufferFactory", DirectChannelBufferFactory.getInstance ());
+        bootstrap.setPipelineFactory (() -> {
+            ChannelPipeline pipeline = pipeline ();
+            if (sslContext != null) {
+                SSLEngine engine = sslContext.createSSLEngine ();
+                engine.setUseClientMode (false);
+                pipeline.addLast ("ssl", new SslHandler (engine));
+            }
+            pipeline.addLast ("decoder", new HttpRequestDecoder ());
+            pipeline.addLast ("aggregator", new HttpChunkAggregator (maxContent));
+            pipeline.addLast ("encoder", new HttpResponseEncoder ());
+            // Files are read in chunks on secure channels (regions would skip the encryption)
+            if (sslContext != null)
+                pipeline.addLast ("streamer", new ChunkedWriteHandler ());
+            pipeline.addLast ("executor", executionHandler);
+            pipeline.addLast ("handler", this);
+            return pipeline;
+        });
+
+        channels.add (bootstrap.bind (new InetSocketAddress (host, port)));
+    }
+
+    @Override public void shutDown () {
+        filter.closeFiles ();
+        if (bootstrap != null) {
+            channels.close ().awaitUninterruptibly ();
+            bootstrap.releaseExternalResources ();
+            executionHandler.releaseExternalResources ();
+            bootstrap = null;
+        }
+    }
+
+    @Override public void channelOpen (ChannelHandlerContext context, ChannelStateEvent event) {
+        channels.add (event.getChannel ());
+    }
+
+    @Override public void messageReceived (ChannelHandlerContext context, MessageEvent event)
+        throws Exception {
+
+        final Channel channel = event.getChannel ();
+        final HttpRequest request = (HttpRequest)event.getMessage ();
+        final NettyResponse response =
+            new NettyResponse (channel, request.getProtocolVersion (), isKeepAlive (request));
+
+        filter.handle (new NettyRequest (request, channel, secure), response);
+        response.end ();
+    }
+
+    @Override public void exceptionCaught (ChannelHandlerContext context, ExceptionEvent event) {
+        final Channel channel = event.getChannel ();
+        LOG.fine ("Netty channel error: " + event.getCause ().getMessage ());
+        if (channel.isConnected ()) {
+            HttpResponse response =
+                new DefaultHttpResponse (HttpVersion.HTTP_1_1, INTERNAL_SERVER_ERROR);
+            HttpHeaders.setContentLength (response, 0);
+            channel.write (response).addListener (ChannelFutureListener.CLOSE);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import sabina.Request;
+import sabina.Route;
+import sabina.route.PathSegments;
+import sabina.route.RouteMatch;
+
+/**
+ * State of a request while it is handled. The filters and the route handler share one
+ * {@link Request} (bound to each of them in turn) and the result of the request travels here
+ * instead of in the filter (which is shared by all requests).
+ *
+ * @author jamming
+ */
+final class RequestContext {
+    final ServerRequest serverRequest;
+    final ServerResponse serverResponse;
+    final PathSegments path;
+
+    /** False if the request has been left for other handlers. */
+    boolean handled;
+
+    private Request request;
+
+    RequestContext (ServerRequest serverRequest, ServerResponse serverResponse, PathSegments path) {
+        this.serverRequest = serverRequest;
+        this.serverResponse = serverResponse;
+        this.path = path;
+    }
+
+    /**
+     * Returns the request bound to a route (a filter or the target). It is created the first
+     * time and reused afterwards.
+     *
+     * @param route Route to bind the request to.
+     * @return The request of this context.
+     */
+    Request request (Route route) {
+        if (request == null)
+            request = new Request (new RouteMatch (route, path), serverRequest, serverResponse);
+        else
+            request.bind (route);
+        return request;
+    }
+
+    /** @return False if the route (or a filter) disabled the response compression. */
+    boolean compress () {
+        return request == null || request.response.compress ();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * HTTP request as seen by Sabina. It decouples {@link sabina.Request} and the matcher filter
+ * from the servlet API, so backends not based on servlets can run routes on their own request
+ * type.
+ *
+ * @author jamming
+ */
+public interface ServerRequest {
+    /**
+     * Adapts a servlet request.
+     *
+     * @param request Servlet request.
+     * @return The request backed by the servlet request.
+     */
+    static ServerRequest of (HttpServletRequest request) {
+        return new ServletRequestAdapter (request);
+    }
+
+    String method ();
+    String scheme ();
+    String host ();
+    int port ();
+    String uri ();
+    String url ();
+    String protocol ();
+    boolean secure ();
+    String remoteAddress ();
+
+    String pathInfo ();
+    String servletPath ();
+    String contextPath ();
+    String queryString ();
+
+    /** @return The first value of the parameter or null if the parameter is not present. */
+    String parameter (String name);
+    Set<String> parameterNames ();
+
+    /** @return The first value of the header or null if the header is not present. */
+    String header (String name);
+    Set<String> headerNames ();
+
+    String contentType ();
+    int contentLength ();
+    InputStream inputStream () throws IOException;
+
+    Object attribute (String name);
+    void attribute (String name, Object value);
+    Set<String> attributeNames ();
+
+    /** @return The cookies sent by the client (null if there are none). */
+    Cookie[] cookies ();
+
+    /**
+     * Returns the session of the request.
+     *
+     * @param create If true, a session is created if the request does not have one.
+     * @return The session or null if there is no session and create is false.
+     * @throws UnsupportedOperationException If the backend does not support sessions.
+     */
+    HttpSession session (boolean create);
+
+    /** @return True if the request was forwarded from another resource. */
+    boolean forwarded ();
+
+    /** @return True if the request can be completed after the handling thread returns. */
+    boolean asyncSupported ();
+
+    /**
+     * Keeps the request open after the handling thread returns.
+     *
+     * @return The action that completes the request (it has to be called once).
+     */
+    Runnable startAsync ();
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * HTTP response as seen by Sabina (the counterpart of {@link ServerRequest}).
+ *
+ * @author jamming
+ */
+public interface ServerResponse {
+    /**
+     * Adapts a servlet response.
+     *
+     * @param response Servlet response.
+     * @return The response backed by the servlet response.
+     */
+    static ServerResponse of (HttpServletResponse response) {
+        return new ServletResponseAdapter (response);
+    }
+
+    void status (int status);
+    String contentType ();
+    void contentType (String contentType);
+    void contentLength (long length);
+
+    /** @return The first value of a response header (null if it is not set). */
+    String header (String name);
+    void addHeader (String name, String value);
+    void setHeader (String name, String value);
+    void addDateHeader (String name, long date);
+    void addCookie (Cookie cookie);
+
+    void redirect (String location) throws IOException;
+    void sendError (int status) throws IOException;
+
+    /** @return True if the status and headers have been sent. */
+    boolean committed ();
+
+    /** @return Blocking stream to write the body. */
+    OutputStream outputStream () throws IOException;
+
+    /**
+     * Sends a complete body. Backends able to write without blocking override it, by default the
+     * buffer is written to the output stream.
+     *
+     * @param buffer Body content (from its position to its limit).
+     */
+    default void send (ByteBuffer buffer) throws IOException {
+        OutputStream output = outputStream ();
+        if (buffer.hasArray ())
+            output.write (
+                buffer.array (), buffer.arrayOffset () + buffer.position (), buffer.remaining ());
+        else
+            Channels.newChannel (output).write (buffer);
+    }
+}
@@ -1,7 +1,10 @@
 package sabina.server;
 
+import static sabina.server.Settings.setting;
+
 import java.util.EnumSet;
 import javax.servlet.DispatcherType;
+import javax.servlet.FilterRegistration;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
@@ -13,6 +16,8 @@ import sabina.route.RouteMatcherFactory;
  */
 public abstract class ServletApplication implements Router, ServletContextListener {
     private RouteMatcher matcher;
+    private String executor = setting ("sabina.executor", "platform");
+    private final DefaultHeaders headers = new DefaultHeaders ();
 
     /**
      * Receives notification that the web application initialization
@@ -27,9 +32,13 @@ public abstract class ServletApplication implements Router, ServletContextListen
      */
     @Override public void contextInitialized (ServletContextEvent sce) {
         try {
-            final MatcherFilter filter = new MatcherFilter (getMatcher (), "servlet", false);
             routes ();
-            sce.getServletContext ().addFilter ("sabina", filter).addMappingForUrlPatterns
+            final MatcherFilter filter = new MatcherFilter (
+                getMatcher (), "servlet", HandlerExecutors.create (executor), headers, false);
+            final FilterRegistration.Dynamic registration =
+                sce.getServletContext ().addFilter ("sabina", filter);
+            registration.setAsyncSupported (true);
+            registration.addMappingForUrlPatterns
                 (EnumSet.allOf (DispatcherType.class), false, "/*");
         }
         catch (Exception e) {
@@ -52,6 +61,36 @@ public abstract class ServletApplication implements Router, ServletContextListen
         // Not implemented
     }
 
+    /**
+     * Sets the executor running route handlers: 'platform' (container threads) or 'virtual'
+     * (a virtual thread per handler if the JDK supports them). It has to be called before the
+     * context is initialized or in {@link #routes()}.
+     *
+     * @param executor Executor type.
+     */
+    public void executor (String executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a header to all responses (filters and handlers can override it).
+     *
+     * @param name Header name.
+     * @param value Header value.
+     */
+    public void header (String name, String value) {
+        headers.add (name, value);
+    }
+
+    /**
+     * Adds the 'Date' header to all responses (formatted once per second).
+     *
+     * @param enabled True to add the 'Date' header.
+     */
+    public void dateHeader (boolean enabled) {
+        headers.date (enabled);
+    }
+
     @Override public RouteMatcher getMatcher () {
         return matcher == null? matcher = RouteMatcherFactory.create () : matcher;
     }
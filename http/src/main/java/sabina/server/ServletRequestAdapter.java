@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.util.Collections.list;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.servlet.AsyncContext;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Request of the servlet backends.
+ *
+ * @author jamming
+ */
+final class ServletRequestAdapter implements ServerRequest {
+    private final HttpServletRequest request;
+
+    ServletRequestAdapter (HttpServletRequest request) {
+        this.request = request;
+    }
+
+    @Override public String method () { return request.getMethod (); }
+    @Override public String scheme () { return request.getScheme (); }
+    @Override public String host () { return request.getServerName (); }
+    @Override public int port () { return request.getServerPort (); }
+    @Override public String uri () { return request.getRequestURI (); }
+    @Override public String url () { return request.getRequestURL ().toString (); }
+    @Override public String protocol () { return request.getProtocol (); }
+    @Override public boolean secure () { return request.isSecure (); }
+    @Override public String remoteAddress () { return request.getRemoteAddr (); }
+
+    @Override public String pathInfo () { return request.getPathInfo (); }
+    @Override public String servletPath () { return request.getServletPath (); }
+    @Override public String contextPath () { return request.getContextPath (); }
+    @Override public String queryString () { return request.getQueryString (); }
+
+    @Override public String parameter (String name) { return request.getParameter (name); }
+
+    @Override public Set<String> parameterNames () {
+        return request.getParameterMap ().keySet ();
+    }
+
+    @Override public String header (String name) { return request.getHeader (name); }
+
+    @Override public Set<String> headerNames () {
+        return new TreeSet<> (list (request.getHeaderNames ()));
+    }
+
+    @Override public String contentType () { return request.getContentType (); }
+    @Override public int contentLength () { return request.getContentLength (); }
+
+    @Override public InputStream inputStream () throws IOException {
+        return request.getInputStream ();
+    }
+
+    @Override public Object attribute (String name) { return request.getAttribute (name); }
+
+    @Override public void attribute (String name, Object value) {
+        request.setAttribute (name, value);
+    }
+
+    @Override public Set<String> attributeNames () {
+        return new HashSet<> (list (request.getAttributeNames ()));
+    }
+
+    @Override public Cookie[] cookies () { return request.getCookies (); }
+
+    @Override public HttpSession session (boolean create) { return request.getSession (create); }
+
+    @Override public boolean forwarded () {
+        return request.getAttribute (RequestDispatcher.FORWARD_REQUEST_URI) != null;
+    }
+
+    @Override public boolean asyncSupported () { return request.isAsyncSupported (); }
+
+    /* There is no timeout, it is up to the handler to complete the request. */
+    @Override public Runnable startAsync () {
+        final AsyncContext context = request.startAsync ();
+        context.setTimeout (0);
+        return context::complete;
+    }
+}
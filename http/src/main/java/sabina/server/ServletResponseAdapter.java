@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Response of the servlet backends.
+ *
+ * @author jamming
+ */
+final class ServletResponseAdapter implements ServerResponse {
+    private final HttpServletResponse response;
+
+    ServletResponseAdapter (HttpServletResponse response) {
+        this.response = response;
+    }
+
+    @Override public void status (int status) { response.setStatus (status); }
+    @Override public String contentType () { return response.getContentType (); }
+    @Override public void contentType (String type) { response.setContentType (type); }
+    @Override public void contentLength (long length) { response.setContentLengthLong (length); }
+
+    @Override public String header (String name) { return response.getHeader (name); }
+
+    @Override public void addHeader (String name, String value) {
+        response.addHeader (name, value);
+    }
+
+    @Override public void setHeader (String name, String value) {
+        response.setHeader (name, value);
+    }
+
+    @Override public void addDateHeader (String name, long date) {
+        response.addDateHeader (name, date);
+    }
+
+    @Override public void addCookie (Cookie cookie) { response.addCookie (cookie); }
+
+    @Override public void redirect (String location) throws IOException {
+        response.sendRedirect (location);
+    }
+
+    @Override public void sendError (int status) throws IOException {
+        response.sendError (status);
+    }
+
+    @Override public boolean committed () { return response.isCommitted (); }
+
+    @Override public OutputStream outputStream () throws IOException {
+        return response.getOutputStream ();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static co.there4.bali.Configuration.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import co.there4.bali.Configuration;
+
+/**
+ * Backend settings (see 'sabina.properties'), missing or empty settings take the given default.
+ *
+ * <p>The configuration is loaded once, by the server or by the first setting read (servlet
+ * deployments do not use the server). Sources, from lower to higher priority:
+ *
+ * <ol>
+ *     <li>Application resource (basic defaults)</li>
+ *     <li>Application resource 'application.properties'</li>
+ *     <li>System properties starting with 'sabina'</li>
+ *     <li>Config file 'application.properties' (installation configuration)</li>
+ *     <li>Values loaded by the application before the first load</li>
+ * </ol>
+ *
+ * @author jamming
+ */
+public final class Settings {
+    private static final Configuration CONFIGURATION = load (configuration ());
+
+    private Settings () {
+        throw new IllegalStateException ();
+    }
+
+    /**
+     * Returns the configuration, loading it the first time.
+     *
+     * @return The loaded configuration.
+     */
+    public static Configuration load () {
+        return CONFIGURATION;
+    }
+
+    private static Configuration load (Configuration configuration) {
+        Map<String, Object> loaded = new HashMap<> ();
+        configuration.keys ().forEach (key -> loaded.put (key, configuration.get (key)));
+
+        return configuration.load (
+            resource ("/sabina.properties"),
+            resource ("/application.properties"),
+            system ("sabina"),
+            file ("application.properties"),
+            loaded
+        );
+    }
+
+    static int setting (String key, int defaultValue) {
+        Object value = CONFIGURATION.get (key);
+        return value == null || value.toString ().isEmpty ()?
+            defaultValue : Integer.parseInt (value.toString ());
+    }
+
+    static String setting (String key, String defaultValue) {
+        Object value = CONFIGURATION.get (key);
+        return value == null || value.toString ().isEmpty ()? defaultValue : value.toString ();
+    }
+
+    static boolean setting (String key, boolean defaultValue) {
+        Object value = CONFIGURATION.get (key);
+        return value == null || value.toString ().isEmpty ()?
+            defaultValue : Boolean.parseBoolean (value.toString ());
+    }
+}
@@ -0,0 +1,808 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
+import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+import static java.util.logging.Logger.getLogger;
+import static co.there4.bali.Strings.isEmpty;
+import static sabina.server.Settings.setting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+
+/**
+ * Serves the files of a classpath folder and of an external folder (in that order) for all
+ * backends. Both folders are scanned on start up into an index by request path, so requests
+ * not in the index are rejected without touching the disk. Files of the external folder
+ * created or deleted later are only picked up if the folder is watched.
+ *
+ * <p>Small files are kept in memory (encoded once, with their ETag computed from their
+ * content) in a cache bounded by size which evicts the least recently used files. Conditional
+ * requests ('If-None-Match' and 'If-Modified-Since') of cached files are answered with 304
+ * without reading the file again.
+ *
+ * <p>If a file has a gzipped copy next to it ('app.js.gz') the copy is sent to clients accepting
+ * gzip (with the content type of the original file).
+ *
+ * <p>Single and multiple 'Range' requests are supported (conditioned by 'If-Range'). Files not
+ * cached which are bigger than a threshold are memory mapped and sent without heap copies.
+ *
+ * <p>Settings: 'sabina.static.cache.size' (bytes held by the cache, 0 disables it),
+ * 'sabina.static.cache.file.size' (files bigger than this are read on each request),
+ * 'sabina.static.map.size' (files not cached from this size are memory mapped) and
+ * 'sabina.static.watch' (refresh the index when the external folder changes).
+ *
+ * @author jamming
+ */
+final class StaticFiles {
+    private static final Logger LOG = getLogger (StaticFiles.class.getName ());
+
+    private static final String WELCOME_FILE = "index.html";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String DEFAULT_TYPE = "application/octet-stream";
+    private static final int BUFFER_SIZE = 8 * 1024;
+    /** Memory accounted for each cached file besides its content. */
+    private static final int ENTRY_SIZE = 256;
+    /** Requests with more ranges are answered with the whole file. */
+    private static final int MAX_RANGES = 16;
+
+    private static final Map<String, String> MIME_TYPES = new HashMap<> ();
+
+    static {
+        String[] types = {
+            "html", "text/html", "htm", "text/html", "css", "text/css", "txt", "text/plain",
+            "csv", "text/csv", "xml", "application/xml", "js", "application/javascript",
+            "mjs", "application/javascript", "json", "application/json",
+            "map", "application/json", "svg", "image/svg+xml", "png", "image/png",
+            "jpg", "image/jpeg", "jpeg", "image/jpeg", "gif", "image/gif", "webp", "image/webp",
+            "ico", "image/x-icon", "woff", "font/woff", "woff2", "font/woff2", "ttf", "font/ttf",
+            "otf", "font/otf", "wasm", "application/wasm", "pdf", "application/pdf",
+            "zip", "application/zip", "gz", "application/gzip", "mp3", "audio/mpeg",
+            "mp4", "video/mp4", "webm", "video/webm"
+        };
+
+        for (int ii = 0; ii < types.length; ii += 2)
+            MIME_TYPES.put (types[ii], types[ii + 1]);
+    }
+
+    /** Indexed files and their gzipped copies (both by request path, without leading slash). */
+    private static final class Index {
+        final Map<String, URL> files;
+        final Map<String, String> gzipped;
+
+        Index (Map<String, URL> files, Map<String, String> gzipped) {
+            this.files = files;
+            this.gzipped = gzipped;
+        }
+    }
+
+    /** File metadata along its content (if it is small enough to be kept in memory). */
+    static final class StaticFile {
+        final URL url;
+        /** File system path (null for files inside jars). */
+        final Path path;
+        final String contentType;
+        final long length;
+        final long lastModified;
+        final String etag;
+        final String lastModifiedHeader;
+        final byte[] content;
+
+        StaticFile (URL url, Path path, String contentType, long length, long lastModified,
+            String etag, byte[] content) {
+
+            this.url = url;
+            this.path = path;
+            this.contentType = contentType;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.lastModifiedHeader =
+                lastModified > 0? DefaultHeaders.httpDate (lastModified) : null;
+            this.content = content;
+        }
+
+        int weight () { return ENTRY_SIZE + (content == null? 0 : content.length); }
+    }
+
+    /**
+     * Creates the static files handler with the server settings.
+     *
+     * @param backend Server backend.
+     * @param resourcesFolder Classpath folder (can be empty).
+     * @param filesFolder External folder (can be empty).
+     * @return The static files handler or null if there are no folders.
+     */
+    static StaticFiles create (String backend, String resourcesFolder, String filesFolder) {
+        if (isEmpty (resourcesFolder) && isEmpty (filesFolder))
+            return null;
+
+        StaticFiles files = new StaticFiles (
+            backend,
+            resourcesFolder,
+            filesFolder,
+            setting ("sabina.static.cache.size", 16 * 1024 * 1024),
+            setting ("sabina.static.cache.file.size", 1024 * 1024),
+            setting ("sabina.static.map.size", 1024 * 1024)
+        );
+
+        if (setting ("sabina.static.watch", false))
+            files.watch ();
+
+        return files;
+    }
+
+    static String contentType (String path) {
+        int dot = path.lastIndexOf ('.');
+        String type = dot == -1? null : MIME_TYPES.get (path.substring (dot + 1).toLowerCase ());
+        if (type == null)
+            type = URLConnection.guessContentTypeFromName (path);
+        return type != null? type : DEFAULT_TYPE;
+    }
+
+    private final String backend;
+    private final ClassLoader loader;
+    private final String resourcesFolder;
+    private final Path filesFolder;
+    private final long cacheSize;
+    private final int fileSize;
+    private final int mapSize;
+
+    /* Replaced (not modified) when it is refreshed */
+    private volatile Index index;
+
+    /* Cached files by request path in access order (the first one is the least recently used) */
+    private final LinkedHashMap<String, StaticFile> cache = new LinkedHashMap<> (64, 0.75f, true);
+    private long cachedBytes;
+
+    private volatile WatchService watcher;
+
+    StaticFiles (String backend, String resourcesFolder, String filesFolder, long cacheSize,
+        int fileSize, int mapSize) {
+
+        ClassLoader contextLoader = Thread.currentThread ().getContextClassLoader ();
+        this.loader = contextLoader != null? contextLoader : StaticFiles.class.getClassLoader ();
+        this.resourcesFolder = isEmpty (resourcesFolder)? null : folder (resourcesFolder);
+        this.filesFolder = isEmpty (filesFolder)?
+            null : Paths.get (filesFolder).toAbsolutePath ().normalize ();
+        this.cacheSize = cacheSize;
+        this.fileSize = fileSize;
+        this.mapSize = mapSize;
+        this.backend = backend;
+        this.index = scan ();
+    }
+
+    private static String folder (String resourcesFolder) {
+        String folder = resourcesFolder.startsWith ("/")?
+            resourcesFolder.substring (1) : resourcesFolder;
+        return folder.endsWith ("/")? folder.substring (0, folder.length () - 1) : folder;
+    }
+
+    /**
+     * Scans the folders again and drops the cached files.
+     */
+    void refresh () {
+        index = scan ();
+
+        synchronized (cache) {
+            cache.clear ();
+            cachedBytes = 0;
+        }
+    }
+
+    /**
+     * Stops watching the external folder (if it was watched).
+     */
+    void close () {
+        try {
+            if (watcher != null)
+                watcher.close ();
+        }
+        catch (IOException e) {
+            LOG.warning ("Error closing static files watcher: " + e.getMessage ());
+        }
+    }
+
+    /* Builds the index: classpath files first, external files next and welcome files last */
+    private Index scan () {
+        final Map<String, URL> files = new HashMap<> ();
+
+        if (resourcesFolder != null)
+            scanResources (files);
+        if (filesFolder != null)
+            scanFolder (filesFolder, files);
+
+        final Map<String, String> welcomeFiles = new HashMap<> ();
+        files.keySet ().forEach (path -> {
+            if (path.equals (WELCOME_FILE) || path.endsWith ("/" + WELCOME_FILE)) {
+                String folder = path.substring (0, path.length () - WELCOME_FILE.length ());
+                if (!files.containsKey (folder))
+                    welcomeFiles.put (folder, path);
+                String name = folder.isEmpty ()? null : folder.substring (0, folder.length () - 1);
+                if (name != null && !files.containsKey (name))
+                    welcomeFiles.put (name, path);
+            }
+        });
+        welcomeFiles.forEach ((folder, path) -> files.putIfAbsent (folder, files.get (path)));
+
+        final Map<String, String> gzipped = new HashMap<> ();
+        files.keySet ().forEach (path -> {
+            String file = welcomeFiles.getOrDefault (path, path);
+            if (!file.endsWith (GZIP_SUFFIX) && files.containsKey (file + GZIP_SUFFIX))
+                gzipped.put (path, file + GZIP_SUFFIX);
+        });
+
+        LOG.fine ("Static files indexed: " + files.size () + " (" + gzipped.size () + " gzipped)");
+        return new Index (files, gzipped);
+    }
+
+    private void scanResources (Map<String, URL> files) {
+        try {
+            Enumeration<URL> roots = loader.getResources (resourcesFolder);
+            while (roots.hasMoreElements ()) {
+                URL root = roots.nextElement ();
+                if (root.getProtocol ().equals ("file"))
+                    scanFolder (Paths.get (root.toURI ()), files);
+                else if (root.getProtocol ().equals ("jar"))
+                    scanJar ((JarURLConnection)root.openConnection (), files);
+                else
+                    LOG.warning ("Static files not indexed in: " + root);
+            }
+        }
+        catch (IOException | URISyntaxException e) {
+            LOG.warning ("Error indexing static files: " + e.getMessage ());
+        }
+    }
+
+    private static void scanJar (JarURLConnection connection, Map<String, URL> files)
+        throws IOException, URISyntaxException {
+
+        final String entryName = connection.getEntryName ();
+        final String prefix = entryName.endsWith ("/")? entryName : entryName + "/";
+        final String jarUrl = "jar:" + connection.getJarFileURL () + "!/";
+
+        try (JarFile jar = new JarFile (new File (connection.getJarFileURL ().toURI ()))) {
+            Enumeration<JarEntry> entries = jar.entries ();
+            while (entries.hasMoreElements ()) {
+                JarEntry entry = entries.nextElement ();
+                String name = entry.getName ();
+                if (!entry.isDirectory () && name.startsWith (prefix))
+                    files.putIfAbsent (name.substring (prefix.length ()), new URL (jarUrl + name));
+            }
+        }
+    }
+
+    private static void scanFolder (Path folder, Map<String, URL> files) {
+        try {
+            Files.walkFileTree (folder, EnumSet.of (FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path> () {
+                    @Override public FileVisitResult visitFile (
+                        Path file, BasicFileAttributes attributes) throws IOException {
+
+                        if (attributes.isRegularFile ()) {
+                            String path = folder.relativize (file).toString ();
+                            files.putIfAbsent (
+                                path.replace (File.separatorChar, '/'), file.toUri ().toURL ());
+                        }
+                        return CONTINUE;
+                    }
+
+                    @Override public FileVisitResult visitFileFailed (Path file, IOException e) {
+                        return CONTINUE;
+                    }
+                });
+        }
+        catch (IOException e) {
+            LOG.warning ("Error indexing static files in " + folder + ": " + e.getMessage ());
+        }
+    }
+
+    /* Refreshes the index in a daemon thread each time the external folder changes */
+    private void watch () {
+        if (filesFolder == null)
+            return;
+
+        try {
+            watcher = filesFolder.getFileSystem ().newWatchService ();
+            register ();
+
+            Thread thread = new Thread (this::refreshOnChanges, "sabina-static-watcher");
+            thread.setDaemon (true);
+            thread.start ();
+        }
+        catch (IOException e) {
+            LOG.warning ("External static files folder not watched: " + e.getMessage ());
+        }
+    }
+
+    /* Registers all the folders (registering a folder twice is ignored) */
+    private void register () throws IOException {
+        Files.walkFileTree (filesFolder, EnumSet.of (FOLLOW_LINKS), Integer.MAX_VALUE,
+            new SimpleFileVisitor<Path> () {
+                @Override public FileVisitResult preVisitDirectory (
+                    Path folder, BasicFileAttributes attributes) throws IOException {
+
+                    folder.register (watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    return CONTINUE;
+                }
+
+                @Override public FileVisitResult visitFileFailed (Path file, IOException e) {
+                    return CONTINUE;
+                }
+            });
+    }
+
+    private void refreshOnChanges () {
+        try {
+            while (true) {
+                // Changes usually come in batches, all pending ones are handled together
+                for (WatchKey key = watcher.take (); key != null; key = watcher.poll ()) {
+                    key.pollEvents ();
+                    key.reset ();
+                }
+
+                register ();
+                refresh ();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+            LOG.fine ("Static files watcher stopped");
+        }
+        catch (IOException e) {
+            LOG.warning ("Static files watcher stopped: " + e.getMessage ());
+        }
+    }
+
+    /**
+     * Sends a file (or the requested ranges of it) if the request path maps to one ('GET' and
+     * 'HEAD' requests only).
+     *
+     * @param request The request.
+     * @param response The response.
+     * @return True if the request has been handled (false if there is no file for it).
+     * @throws IOException If the file could not be read or sent.
+     */
+    boolean serve (ServerRequest request, ServerResponse response) throws IOException {
+        final StaticFile file = find (request);
+        if (file == null)
+            return false;
+
+        serve (file, request, response);
+        return true;
+    }
+
+    /**
+     * Finds the file requested ('GET' and 'HEAD' requests only).
+     *
+     * @param request The request.
+     * @return The file or null if the request is not for a file.
+     * @throws IOException If the file could not be read.
+     */
+    StaticFile find (ServerRequest request) throws IOException {
+        final String method = request.method ();
+        return method.equals ("GET") || method.equals ("HEAD")? find (request.uri ()) : null;
+    }
+
+    /**
+     * Sends a file found for a request (or the requested ranges of it).
+     *
+     * @param original The file found by {@link #find(ServerRequest)}.
+     * @param request The request.
+     * @param response The response.
+     * @throws IOException If the file could not be read or sent.
+     */
+    void serve (StaticFile original, ServerRequest request, ServerResponse response)
+        throws IOException {
+
+        final boolean head = request.method ().equals ("HEAD");
+        final String uri = request.uri ();
+        final String contentType = original.contentType;
+        final StaticFile file = encoded (uri, original, request, response);
+
+        response.setHeader ("ETag", file.etag);
+        response.setHeader ("Accept-Ranges", "bytes");
+        if (file.lastModifiedHeader != null)
+            response.setHeader ("Last-Modified", file.lastModifiedHeader);
+
+        if (notModified (file, request)) {
+            response.status (304);
+            return;
+        }
+
+        final long[] ranges =
+            rangeAllowed (file, request)? ranges (request.header ("Range"), file.length) : null;
+
+        if (ranges == null) {
+            response.status (200);
+            response.contentType (contentType);
+            response.contentLength (file.length);
+            if (!head)
+                write (file, 0, file.length, response);
+        }
+        else if (ranges.length == 0) {
+            response.status (416);
+            response.setHeader ("Content-Range", "bytes */" + file.length);
+            response.contentLength (0);
+        }
+        else if (ranges.length == 2) {
+            final long count = ranges[1] - ranges[0] + 1;
+            response.status (206);
+            response.contentType (contentType);
+            response.setHeader ("Content-Range", contentRange (ranges[0], ranges[1], file));
+            response.contentLength (count);
+            if (!head)
+                write (file, ranges[0], count, response);
+        }
+        else {
+            writeParts (file, contentType, ranges, head, response);
+        }
+    }
+
+    /* Returns the gzipped copy of the file if there is one and the client accepts it */
+    private StaticFile encoded (
+        String uri, StaticFile file, ServerRequest request, ServerResponse response)
+        throws IOException {
+
+        final String gzipped = index.gzipped.get (uri.substring (1));
+        if (gzipped == null)
+            return file;
+
+        // Caches must keep both versions of the file
+        response.setHeader ("Vary", "Accept-Encoding");
+        if (!Compression.GZIP.equals (Compression.encoding (request.header ("Accept-Encoding"))))
+            return file;
+
+        final StaticFile encodedFile = find ("/" + gzipped);
+        if (encodedFile == null)
+            return file;
+
+        response.setHeader ("Content-Encoding", Compression.GZIP);
+        return encodedFile;
+    }
+
+    /**
+     * Parses a 'Range' header. Unsatisfiable ranges are discarded and the others are limited to
+     * the file length.
+     *
+     * @param range Header value (can be null).
+     * @param length File length.
+     * @return First and last byte of each range (an empty array if no range can be satisfied)
+     *  or null if there is no header or it is not valid (the whole file is sent).
+     */
+    static long[] ranges (String range, long length) {
+        if (range == null || !range.startsWith ("bytes="))
+            return null;
+
+        final String[] specs = range.substring (6).split (",");
+        if (specs.length > MAX_RANGES)
+            return null;
+
+        final long[] result = new long[specs.length * 2];
+        int count = 0;
+
+        try {
+            for (String spec : specs) {
+                final int dash = spec.indexOf ('-');
+                if (dash == -1)
+                    return null;
+
+                final String first = spec.substring (0, dash).trim ();
+                final String last = spec.substring (dash + 1).trim ();
+                final long start, end;
+
+                if (first.isEmpty ()) {
+                    long suffix = Long.parseLong (last);
+                    if (suffix < 0)
+                        return null;
+                    start = Math.max (0, length - suffix);
+                    end = suffix == 0? -1 : length - 1;
+                }
+                else {
+                    start = Long.parseLong (first);
+                    long lastByte = last.isEmpty ()? Long.MAX_VALUE : Long.parseLong (last);
+                    if (start < 0 || lastByte < start)
+                        return null;
+                    end = Math.min (lastByte, length - 1);
+                }
+
+                if (start < length && start <= end) {
+                    result[count++] = start;
+                    result[count++] = end;
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        return Arrays.copyOf (result, count);
+    }
+
+    /* Ranges are ignored if 'If-Range' does not match the current file version */
+    private static boolean rangeAllowed (StaticFile file, ServerRequest request) {
+        final String ifRange = request.header ("If-Range");
+        return ifRange == null
+            || ifRange.equals (file.etag)
+            || ifRange.equals (file.lastModifiedHeader);
+    }
+
+    private static String contentRange (long start, long end, StaticFile file) {
+        return "bytes " + start + '-' + end + '/' + file.length;
+    }
+
+    /* Sends a 'multipart/byteranges' body with one part for each range */
+    private void writeParts (StaticFile file, String contentType, long[] ranges, boolean head,
+        ServerResponse response) throws IOException {
+
+        final String boundary = Long.toHexString (ThreadLocalRandom.current ().nextLong ());
+        final byte[][] headers = new byte[ranges.length / 2][];
+        long length = 0;
+
+        for (int ii = 0; ii < ranges.length; ii += 2) {
+            String header = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Range: " + contentRange (ranges[ii], ranges[ii + 1], file) + "\r\n\r\n";
+            headers[ii / 2] = header.getBytes (US_ASCII);
+            length += headers[ii / 2].length + ranges[ii + 1] - ranges[ii] + 1;
+        }
+
+        final byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes (US_ASCII);
+
+        response.status (206);
+        response.contentType ("multipart/byteranges; boundary=" + boundary);
+        response.contentLength (length + end.length);
+        if (head)
+            return;
+
+        final OutputStream output = response.outputStream ();
+        for (int ii = 0; ii < ranges.length; ii += 2) {
+            output.write (headers[ii / 2]);
+            copy (file, ranges[ii], ranges[ii + 1] - ranges[ii] + 1, output);
+        }
+        output.write (end);
+    }
+
+    /**
+     * Checks if a request path maps to a file (without reading it).
+     *
+     * @param uri Request path.
+     * @return True if the path is in the index.
+     */
+    boolean indexed (String uri) {
+        return uri != null && uri.startsWith ("/") && index.files.containsKey (uri.substring (1));
+    }
+
+    /**
+     * Finds the file for a request path (welcome files are used for folders). Only indexed
+     * paths are looked up: paths with '..' or not normalized are never found.
+     *
+     * @param uri Request path.
+     * @return The file or null if the path does not map to a file.
+     * @throws IOException If the file could not be read.
+     */
+    StaticFile find (String uri) throws IOException {
+        if (uri == null || !uri.startsWith ("/"))
+            return null;
+
+        final String path = uri.substring (1);
+        final URL url = index.files.get (path);
+        if (url == null)
+            return null;
+
+        synchronized (cache) {
+            StaticFile file = cache.get (path);
+            if (file != null)
+                return file;
+        }
+
+        try {
+            StaticFile file = read (url);
+            if (file.content != null)
+                cache (path, file);
+            return file;
+        }
+        catch (FileNotFoundException | NoSuchFileException e) {
+            return null; // Deleted after the folder was scanned
+        }
+    }
+
+    private void cache (String path, StaticFile file) {
+        synchronized (cache) {
+            StaticFile previous = cache.put (path, file);
+            cachedBytes += file.weight () - (previous == null? 0 : previous.weight ());
+
+            Iterator<StaticFile> files = cache.values ().iterator ();
+            while (cachedBytes > cacheSize && files.hasNext ()) {
+                cachedBytes -= files.next ().weight ();
+                files.remove ();
+            }
+        }
+    }
+
+    private StaticFile read (URL url) throws IOException {
+        final URLConnection connection = url.openConnection ();
+        final long length = connection.getContentLengthLong ();
+        final long lastModified = connection.getLastModified ();
+        final String contentType = contentType (url.getPath ());
+        final Path path = path (url);
+
+        try (InputStream input = connection.getInputStream ()) {
+            if (length < 0 || length > fileSize || cacheSize <= 0) {
+                String etag = '"' + Long.toHexString (length) + '-'
+                    + Long.toHexString (lastModified) + '"';
+                return new StaticFile (url, path, contentType, length, lastModified, etag, null);
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream ((int)length);
+            copy (input, output);
+            byte[] content = output.toByteArray ();
+            return new StaticFile (
+                url, path, contentType, content.length, lastModified, etag (content), content);
+        }
+    }
+
+    private static Path path (URL url) {
+        try {
+            return url.getProtocol ().equals ("file")? Paths.get (url.toURI ()) : null;
+        }
+        catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /* Strong ETag from the content hash */
+    private static String etag (byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance ("SHA-1").digest (content);
+            StringBuilder result = new StringBuilder ("\"");
+            for (int ii = 0; ii < 10; ii++)
+                result.append (String.format ("%02x", hash[ii]));
+            return result.append ('"').toString ();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    private static boolean notModified (StaticFile file, ServerRequest request) {
+        final String ifNoneMatch = request.header ("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split (",")) {
+                String value = tag.trim ();
+                if (value.startsWith ("W/"))
+                    value = value.substring (2);
+                if (value.equals (file.etag) || value.equals ("*"))
+                    return true;
+            }
+            return false;
+        }
+
+        final String ifModifiedSince = request.header ("If-Modified-Since");
+        if (ifModifiedSince == null || file.lastModified <= 0)
+            return false;
+
+        try {
+            long since = ZonedDateTime.parse (ifModifiedSince, RFC_1123_DATE_TIME)
+                .toInstant ().toEpochMilli ();
+            return file.lastModified / 1000 <= since / 1000;
+        }
+        catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /* Cached files are sent from memory and big files from a memory mapped region */
+    private void write (StaticFile file, long position, long count, ServerResponse response)
+        throws IOException {
+
+        if (file.content != null)
+            response.send (ByteBuffer.wrap (file.content, (int)position, (int)count));
+        else if (file.path != null && file.length >= mapSize)
+            BodyWriter.write (file.path, position, count, response, backend);
+        else
+            copy (file, position, count, response.outputStream ());
+    }
+
+    private static void copy (StaticFile file, long position, long count, OutputStream output)
+        throws IOException {
+
+        if (file.content != null) {
+            output.write (file.content, (int)position, (int)count);
+        }
+        else if (file.path != null) {
+            try (FileChannel channel = FileChannel.open (file.path)) {
+                BodyWriter.transfer (channel, position, count, output);
+            }
+        }
+        else {
+            try (InputStream input = file.url.openStream ()) {
+                skip (input, position);
+                copy (input, output, count);
+            }
+        }
+    }
+
+    private static void skip (InputStream input, long count) throws IOException {
+        for (long skipped = 0; skipped < count; ) {
+            long step = input.skip (count - skipped);
+            if (step <= 0) {
+                if (input.read () == -1)
+                    throw new EOFException ();
+                step = 1;
+            }
+            skipped += step;
+        }
+    }
+
+    private static void copy (InputStream input, OutputStream output) throws IOException {
+        copy (input, output, Long.MAX_VALUE);
+    }
+
+    private static void copy (InputStream input, OutputStream output, long limit)
+        throws IOException {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (long left = limit; left > 0; ) {
+            int count = input.read (buffer, 0, (int)Math.min (buffer.length, left));
+            if (count == -1)
+                break;
+            output.write (buffer, 0, count);
+            left -= count;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static co.there4.bali.Strings.isEmpty;
+import static sabina.server.UndertowServer.createSecureSocketContext;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import sabina.route.PathSegments;
+import sabina.route.RoutePlan;
+
+/**
+ * Undertow backend running routes straight on the exchange ('undertow-native'). It skips the
+ * servlet deployment: there are no servlet wrappers, filter chain nor session manager.
+ *
+ * <p>Requests are received in the I/O threads and dispatched to the worker pool to run the
+ * filters and handlers and to write the response (static files, streamed and compressed
+ * bodies are written with blocking streams). Only requests for non blocking routes without
+ * filters (see {@link sabina.Router#nonBlocking}) are handled in the I/O thread. If handlers
+ * run in an executor of their own ('sabina.executor=virtual') workers hand them over to it.
+ *
+ * @author jamming
+ */
+final class UndertowNativeServer implements Backend, HttpHandler {
+    private final MatcherFilter filter;
+    private Undertow server;
+
+    UndertowNativeServer (MatcherFilter aFilter) {
+        filter = aFilter;
+    }
+
+    @Override public void startUp (
+        String host, int port,
+        String keystoreFile, String keystorePassword,
+        String truststoreFile, String truststorePassword,
+        String staticFilesFolder, String externalFilesFolder) {
+
+        filter.serveFiles (staticFilesFolder, externalFilesFolder);
+
+        Undertow.Builder builder = Undertow.builder ().setHandler (this);
+        if (isEmpty (keystoreFile))
+            builder.addHttpListener (port, host);
+        else
+            builder.addHttpsListener (port, host,
+                createSecureSocketContext (
+                    keystoreFile, keystorePassword, truststoreFile, truststorePassword));
+
+        server = builder.build ();
+        server.start ();
+    }
+
+    @Override public void shutDown () {
+        filter.closeFiles ();
+        if (server != null) {
+            server.stop ();
+            server = null;
+        }
+    }
+
+    /* Requests are matched once: the plan is passed to the worker if they are dispatched */
+    @Override public void handleRequest (HttpServerExchange exchange) throws Exception {
+        final ExchangeRequest request = new ExchangeRequest (exchange);
+        final ExchangeResponse response = new ExchangeResponse (exchange);
+        final PathSegments path = PathSegments.of (request.uri ());
+        final RoutePlan plan = filter.plan (request, path);
+
+        if (exchange.isInIoThread () && !filter.nonBlocking (request, path, plan))
+            exchange.dispatch (it -> filter.handle (request, response, path, plan));
+        else
+            filter.handle (request, response, path, plan);
+    }
+}
@@ -14,9 +14,6 @@
 
 package sabina.server;
 
-import static io.undertow.Handlers.predicate;
-import static io.undertow.Handlers.resource;
-import static io.undertow.predicate.Predicates.suffixes;
 import static io.undertow.servlet.Servlets.defaultContainer;
 import static io.undertow.servlet.Servlets.deployment;
 import static java.lang.ClassLoader.getSystemClassLoader;
@@ -25,11 +22,7 @@ import static java.lang.System.setProperty;
 import static javax.servlet.DispatcherType.REQUEST;
 import static co.there4.bali.Strings.isEmpty;
 
-import java.io.File;
-import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.net.ssl.SSLContext;
 import javax.servlet.Filter;
@@ -37,7 +30,6 @@ import javax.servlet.ServletException;
 
 import io.undertow.Undertow;
 import io.undertow.server.HttpHandler;
-import io.undertow.server.handlers.resource.*;
 import io.undertow.servlet.api.*;
 
 final class MatcherFilterInfo extends FilterInfo implements Cloneable {
@@ -46,6 +38,8 @@ final class MatcherFilterInfo extends FilterInfo implements Cloneable {
     public MatcherFilterInfo (final String name, final MatcherFilter aMatcher) {
         super (name, aMatcher.getClass ());
         matcherFilter = aMatcher;
+        // Needed by handlers returning a CompletionStage
+        setAsyncSupported (true);
     }
 
     @Override public FilterInfo clone () {
@@ -57,10 +51,14 @@ final class MatcherFilterInfo extends FilterInfo implements Cloneable {
     @Override public InstanceFactory<? extends Filter> getInstanceFactory () {
         return (InstanceFactory<MatcherFilter>)() -> new InstanceHandle<MatcherFilter> () {
             @Override public MatcherFilter getInstance () {
-                return new MatcherFilter (
+                MatcherFilter filter = new MatcherFilter (
                     matcherFilter.routeMatcher,
                     matcherFilter.backend,
+                    matcherFilter.executor,
+                    matcherFilter.headers,
                     matcherFilter.hasOtherHandlers);
+                filter.serveFiles (matcherFilter);
+                return filter;
             }
 
             @Override public void release () {}
@@ -68,58 +66,6 @@ final class MatcherFilterInfo extends FilterInfo implements Cloneable {
     }
 }
 
-/**
- * TODO Change by version with two resourceManagers (better performance ?)
- */
-final class ChainResourceManager implements ResourceManager {
-
-    private List<ResourceManager> managers = new ArrayList<> ();
-
-    ChainResourceManager (String aStaticPath, String aFilesPath) {
-        if (aStaticPath != null)
-            managers.add (new ClassPathResourceManager (
-                ClassLoader.getSystemClassLoader (), aStaticPath));
-
-        if (aFilesPath != null)
-            managers.add (new FileResourceManager (new File (aFilesPath), 0L));
-    }
-
-    @Override public Resource getResource (String path) throws IOException {
-        for (ResourceManager rm : managers) {
-            Resource res = rm.getResource (path);
-            if (res != null)
-                return res;
-        }
-
-        return null;
-    }
-
-    @Override public boolean isResourceChangeListenerSupported () {
-        for (ResourceManager rm : managers)
-            if (!rm.isResourceChangeListenerSupported ())
-                return false;
-
-        return true;
-    }
-
-    @Override public void registerResourceChangeListener (
-        ResourceChangeListener listener) {
-
-        managers.forEach (manager -> manager.registerResourceChangeListener (listener));
-    }
-
-    @Override public void removeResourceChangeListener (
-        ResourceChangeListener listener) {
-
-        managers.forEach (manager -> manager.removeResourceChangeListener (listener));
-    }
-
-    @Override public void close () throws IOException {
-        for (ResourceManager rm : managers)
-            rm.close ();
-    }
-}
-
 final class UndertowServer implements Backend {
     private final MatcherFilter filter;
     private Undertow server;
@@ -136,7 +82,9 @@ final class UndertowServer implements Backend {
         String staticFilesFolder, String externalFilesFolder) {
 
         try {
-            deploymentManager = createDeploymentManager (staticFilesFolder, externalFilesFolder);
+            // Static files are served by the filter (after running the before filters)
+            filter.serveFiles (staticFilesFolder, externalFilesFolder);
+            deploymentManager = createDeploymentManager ();
             deploymentManager.deploy ();
 
             server = isEmpty (keystoreFile)?
@@ -154,6 +102,7 @@ final class UndertowServer implements Backend {
     }
 
     @Override public void shutDown () {
+        filter.closeFiles ();
         try {
             if (server != null) {
                 deploymentManager.stop ();
@@ -168,9 +117,7 @@ final class UndertowServer implements Backend {
         }
     }
 
-    DeploymentManager createDeploymentManager (
-        String aStaticFilesRoute, String aExternalFilesLocation) throws ServletException {
-
+    DeploymentManager createDeploymentManager () throws ServletException {
         final DeploymentInfo deployment = deployment ()
             .setClassLoader (getSystemClassLoader ())
             .setDeploymentName ("")
@@ -178,17 +125,6 @@ final class UndertowServer implements Backend {
             .addFilter (new MatcherFilterInfo ("router", filter))
             .addFilterUrlMapping ("router", "/*", REQUEST);
 
-        /*
-         * TODO Fix this, search for resource if no route match
-         */
-        if (!isEmpty (aStaticFilesRoute) || !isEmpty (aExternalFilesLocation))
-            deployment.addInnerHandlerChainWrapper (
-                handler -> predicate (suffixes (".jpg", ".png", ".css", ".html", ".js", ".svg"),
-                    resource (new ChainResourceManager (aStaticFilesRoute, aExternalFilesLocation)),
-                    handler
-                )
-            );
-
         return defaultContainer ().addDeployment (deployment);
     }
 
@@ -206,7 +142,7 @@ final class UndertowServer implements Backend {
             .build ();
     }
 
-    private static SSLContext createSecureSocketContext (
+    static SSLContext createSecureSocketContext (
         String keystoreFile, String keystorePassword,
         String truststoreFile, String truststorePassword) {
 
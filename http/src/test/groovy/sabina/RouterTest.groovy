@@ -4,8 +4,13 @@ import java.util.function.BiConsumer
 import java.util.function.Consumer
 
 import org.testng.annotations.Test
+import sabina.route.PathSegments
+import sabina.route.RequestHeaders
 import sabina.route.RouteMatch
 import sabina.route.RouteMatcher
+import sabina.route.RoutePlan
+import sabina.server.ServerRequest
+import sabina.server.ServerResponse
 import sabina.Router.Handler
 import sabina.Router.VoidHandler
 
@@ -29,6 +34,10 @@ import static sabina.HttpMethod.*
                     throw new UnsupportedOperationException ()
                 }
 
+                @Override public boolean removeRoute (HttpMethod method, String path) {
+                    throw new UnsupportedOperationException ()
+                }
+
                 @Override public <T extends Exception> void processFault (
                     Class<T> fault, BiConsumer<? extends Exception, Request> handler) {
                     faultCallback.accept (fault, handler)
@@ -46,6 +55,12 @@ import static sabina.HttpMethod.*
                     throw new UnsupportedOperationException ()
                 }
 
+                @Override public RoutePlan findPlan (
+                    HttpMethod httpMethod, PathSegments path, RequestHeaders headers) {
+
+                    throw new UnsupportedOperationException ()
+                }
+
                 @Override public <T extends Exception> BiConsumer<T, Request> findHandler(
                     Class<T> exceptionClass) {
 
@@ -57,7 +72,8 @@ import static sabina.HttpMethod.*
 
     public void "all wrap void methods return the proper value in their generated callbacks" () {
         Route route = new Route (GET, { "" } as Handler)
-        Request request = new Request (new RouteMatch(route, "/"), null, null)
+        Request request = new Request (
+            new RouteMatch(route, "/"), (ServerRequest)null, (ServerResponse)null)
 
         testRouter.wrap ({} as VoidHandler).apply (request).equals ("")
     }
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+
+@Test public class BodyTest {
+    public void text_is_encoded_as_utf8 () {
+        Body body = Body.of ("Año");
+        assertEquals (body.length (), 4);
+        assertEquals (body.toString (), "Año");
+        assertNull (body.contentType);
+    }
+
+    public void each_buffer_starts_at_the_beginning () {
+        Body body = Body.of ("Hello", "text/plain");
+        ByteBuffer first = body.buffer ();
+        first.position (first.limit ());
+
+        ByteBuffer second = body.buffer ();
+        assertEquals (second.remaining (), 5);
+        assertEquals (body.contentType, "text/plain");
+    }
+
+    public void bytes_are_copied () {
+        byte[] bytes = "Hello".getBytes (UTF_8);
+        Body body = Body.of (bytes, null);
+        bytes[0] = 'J';
+        assertEquals (body.toString (), "Hello");
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void null_text_is_rejected () {
+        Body.of ((String)null);
+    }
+}
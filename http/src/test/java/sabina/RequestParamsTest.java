@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static sabina.HttpMethod.GET;
+
+import org.testng.annotations.Test;
+import sabina.route.PathSegments;
+import sabina.route.RouteMatch;
+import sabina.server.ServerRequest;
+
+@Test public class RequestParamsTest {
+    private static Request request (String route, String path) {
+        return new Request (
+            new RouteMatch (new Route (GET, route, it -> ""), path), (ServerRequest)null, null);
+    }
+
+    public void path_segments_skip_empty_parts () {
+        PathSegments segments = PathSegments.of ("//a/bb//c/");
+        assertEquals (segments.size (), 3);
+        assertEquals (segments.get (1), "bb");
+        assertEquals (segments.from (1), "bb/c");
+        assertEquals (PathSegments.of ("/").size (), 0);
+    }
+
+    public void params_are_read_ignoring_case () {
+        Request request = request ("/users/:userId/:Type", "/users/Joe/Admin");
+
+        assertEquals (request.params ("userid"), "Joe");
+        assertEquals (request.params (":USERID"), "Joe");
+        assertEquals (request.params (":type"), "Admin");
+        assertNull (request.params ("other"));
+        assertNull (request.params (null));
+        assertEquals (request.params ().get (":userid"), "Joe");
+        assertEquals (request.params ().size (), 2);
+    }
+
+    public void wildcards_are_available_as_splat () {
+        Request request = request ("/*/files/*", "/a/files/b/c");
+        assertEquals (request.splat (), asList ("a", "b/c"));
+    }
+
+    public void binding_another_route_recomputes_params () {
+        Request request = request ("/users/:id/*", "/users/Joe/Admin");
+        assertEquals (request.params ().size (), 1);
+        assertEquals (request.splat (), asList ("Admin"));
+
+        request.bind (new Route (GET, "/users/:name/:role", it -> ""));
+        assertEquals (request.params ("name"), "Joe");
+        assertEquals (request.params ("role"), "Admin");
+        assertNull (request.params ("id"));
+        assertEquals (request.splat ().size (), 0);
+    }
+
+    public void numeric_params_are_parsed_from_the_path () {
+        Request request = request ("/world/:id<int>/:big", "/world/42/-9000000000");
+
+        assertEquals (request.intParam ("id"), 42);
+        assertEquals (request.longParam (":big"), -9_000_000_000L);
+        assertEquals (request.params ("id"), "42");
+    }
+
+    public void numbers_are_parsed_in_range () {
+        PathSegments segments = PathSegments.of ("/2147483647/-2147483648/2147483648");
+        assertEquals (segments.getInt (0), Integer.MAX_VALUE);
+        assertEquals (segments.getInt (1), Integer.MIN_VALUE);
+        assertEquals (segments.getLong (2), 2147483648L);
+    }
+
+    @Test (expectedExceptions = NumberFormatException.class)
+    public void numbers_out_of_range_are_rejected () {
+        PathSegments.of ("/9223372036854775808").getLong (0);
+    }
+
+    @Test (expectedExceptions = NumberFormatException.class)
+    public void invalid_numbers_are_rejected () {
+        request ("/world/:id", "/world/-").intParam ("id");
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void missing_numeric_params_are_rejected () {
+        request ("/world/:id", "/world/1").intParam ("other");
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.integration;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+
+import sabina.Server;
+import sabina.integration.TestScenario.UrlResponse;
+
+/**
+ * System tests for handlers returning a CompletionStage.
+ *
+ * @author jamming
+ */
+final class Async {
+    static void setup (Server s) {
+        s.after ("/async/*", it -> it.response.header ("after", "async"));
+
+        s.get ("/async/value/:value", it -> supplyAsync (() -> "Async " + it.params (":value")));
+        s.get ("/async/halt", it -> supplyAsync (() -> {
+            it.halt (403, "halted");
+            return "not halted";
+        }));
+        s.get ("/async/exception", it -> supplyAsync (() -> {
+            throw new UnsupportedOperationException ("async error");
+        }));
+        s.get ("/async/error", it -> {
+            CompletableFuture<String> result = new CompletableFuture<> ();
+            result.completeExceptionally (new IllegalStateException ("failed"));
+            return result;
+        });
+    }
+
+    static void asyncValue (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/async/value/ok");
+        testScenario.assertResponseEquals (response, "Async ok", 200);
+        assertEquals (response.headers.get ("after"), "async");
+    }
+
+    static void asyncHalt (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/async/halt");
+        testScenario.assertResponseEquals (response, "halted", 403);
+    }
+
+    static void asyncException (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/async/exception");
+        assertEquals (response.headers.get ("error"), "async error");
+    }
+
+    static void asyncError (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/async/error");
+        assertEquals (response.status, 500);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.integration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import sabina.Body;
+import sabina.Server;
+import sabina.integration.TestScenario.UrlResponse;
+
+/**
+ * System tests for binary and streamed response bodies.
+ *
+ * @author jamming
+ */
+final class Bodies {
+    private static final String CONTENT = "Content of the body";
+    private static final Body ENCODED = Body.of (CONTENT, "text/plain");
+
+    static void setup (Server s) throws IOException {
+        Path file = Files.createTempFile ("body", ".bin");
+        file.toFile ().deleteOnExit ();
+        Files.write (file, CONTENT.getBytes (UTF_8));
+
+        s.get ("/bodies/bytes", it -> { return CONTENT.getBytes (UTF_8); });
+        s.get ("/bodies/buffer", it -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect (CONTENT.length ());
+            buffer.put (CONTENT.getBytes (UTF_8)).flip ();
+            return buffer;
+        });
+        s.get ("/bodies/input", it -> {
+            return new ByteArrayInputStream (CONTENT.getBytes (UTF_8));
+        });
+        s.get ("/bodies/file", it -> { return file; });
+        s.get ("/bodies/stream", it -> { return Stream.of (CONTENT.split (" ")); });
+        s.get ("/bodies/iterator", it -> { return asList (CONTENT.split (" ")).iterator (); });
+        s.get ("/bodies/encoded", it -> { return ENCODED; });
+    }
+
+    static void bytes (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/bodies/bytes");
+        testScenario.assertResponseEquals (response, CONTENT, 200);
+        assertEquals (response.headers.get ("Content-Type"), "application/octet-stream");
+    }
+
+    static void buffer (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/bodies/buffer");
+        testScenario.assertResponseEquals (response, CONTENT, 200);
+    }
+
+    static void input (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/bodies/input");
+        testScenario.assertResponseEquals (response, CONTENT, 200);
+    }
+
+    static void file (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/bodies/file");
+        testScenario.assertResponseEquals (response, CONTENT, 200);
+        assertEquals (response.headers.get ("Content-Length"), String.valueOf (CONTENT.length ()));
+    }
+
+    static void stream (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/bodies/stream");
+        testScenario.assertResponseEquals (response, CONTENT.replace (" ", ""), 200);
+    }
+
+    static void iterator (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/bodies/iterator");
+        testScenario.assertResponseEquals (response, CONTENT.replace (" ", ""), 200);
+    }
+
+    static void encoded (TestScenario testScenario) {
+        UrlResponse response = testScenario.doGet ("/bodies/encoded");
+        testScenario.assertResponseEquals (response, CONTENT, 200);
+        assertEquals (response.headers.get ("Content-Type"), "text/plain");
+        assertEquals (response.headers.get ("Content-Length"), String.valueOf (CONTENT.length ()));
+    }
+}
@@ -14,7 +14,6 @@
 
 package sabina.integration;
 
-import static java.lang.System.getProperty;
 import static java.util.Arrays.asList;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Logger.getLogger;
@@ -24,6 +23,7 @@ import static sabina.integration.TestScenario.getKeystorePassword;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -54,9 +54,15 @@ import sabina.Server;
         new TestScenario ("jetty", 6021, false, false),
         new TestScenario ("jetty", 6022, false, true),
         new TestScenario ("jetty", 6023, true, false),
-        new TestScenario ("jetty", 6024, true, true)
+        new TestScenario ("jetty", 6024, true, true),
+        new TestScenario ("undertow-native", 6031, false, false),
+        new TestScenario ("undertow-native", 6032, false, true),
+        new TestScenario ("netty", 6041, false, false),
+        new TestScenario ("netty", 6042, false, true),
+        new TestScenario ("netty", 6043, true, false)
     );
 
+    private static File tmpExternalFolder;
     private static File tmpExternalFile;
     private static List<Server> servers = new ArrayList<> ();
 
@@ -66,8 +72,10 @@ import sabina.Server;
         rootLogger.setLevel (INFO);
     }
 
-    @BeforeClass public static void setupFile () throws IOException {
-        tmpExternalFile = new File (getProperty ("java.io.tmpdir"), "externalFile.html");
+    /* Static files are indexed on start up: the file must exist before servers are started */
+    private static void setupFile () throws IOException {
+        tmpExternalFolder = Files.createTempDirectory ("sabina").toFile ();
+        tmpExternalFile = new File (tmpExternalFolder, "externalFile.html");
 
         try (FileWriter writer = new FileWriter (tmpExternalFile)) {
             writer.write ("Content of external file");
@@ -76,10 +84,14 @@ import sabina.Server;
     }
 
     @BeforeClass public static void setup () throws IOException {
+        setupFile ();
+
         for (TestScenario tu : scenarios) {
             Server s = new Server (tu.backend, tu.port);
             servers.add (s);
 
+            Async.setup (s);
+            Bodies.setup (s);
             Books.setup (s);
             Cookies.setup (s);
             Generic.setup (s);
@@ -89,7 +101,7 @@ import sabina.Server;
             if (tu.secure)
                 s.secure (getKeyStoreLocation (), getKeystorePassword ());
             if (tu.externalFiles)
-                s.filesLocation ("/public", getProperty ("java.io.tmpdir"));
+                s.filesLocation ("/public", tmpExternalFolder.getPath ());
 
             s.start ();
         }
@@ -103,7 +115,7 @@ import sabina.Server;
 
     @AfterClass public static void cleanupFile () {
         if (tmpExternalFile != null)
-            if (!tmpExternalFile.delete ())
+            if (!tmpExternalFile.delete () || !tmpExternalFolder.delete ())
                 throw new IllegalStateException ();
     }
 
@@ -119,6 +131,30 @@ import sabina.Server;
         return result;
     }
 
+    @Test(dataProvider = "scenarios")
+    public void asyncValue (TestScenario testScenario) { Async.asyncValue (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void asyncHalt (TestScenario testScenario) { Async.asyncHalt (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void asyncException (TestScenario testScenario) { Async.asyncException (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void asyncError (TestScenario testScenario) { Async.asyncError (testScenario); }
+
+    @Test(dataProvider = "scenarios")
+    public void bytes (TestScenario testScenario) { Bodies.bytes (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void buffer (TestScenario testScenario) { Bodies.buffer (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void input (TestScenario testScenario) { Bodies.input (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void file (TestScenario testScenario) { Bodies.file (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void stream (TestScenario testScenario) { Bodies.stream (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void iterator (TestScenario testScenario) { Bodies.iterator (testScenario); }
+    @Test(dataProvider = "scenarios")
+    public void encoded (TestScenario testScenario) { Bodies.encoded (testScenario); }
+
     @Test(dataProvider = "scenarios")
     public void createBook (TestScenario testScenario) { Books.createBook (testScenario); }
     @Test(dataProvider = "scenarios")
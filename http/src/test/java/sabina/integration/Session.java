@@ -19,6 +19,7 @@ import static java.util.stream.Collectors.joining;
 import static org.testng.Assert.assertEquals;
 import static sabina.integration.TestScenario.*;
 
+import org.testng.SkipException;
 import sabina.Router.Handler;
 import sabina.Server;
 
@@ -60,7 +61,15 @@ final class Session {
         });
     }
 
+    /* Sessions are not supported by the native Undertow and Netty backends */
+    private static void checkSessions (TestScenario testScenario) {
+        String backend = testScenario.backend;
+        if (backend.equals ("undertow-native") || backend.equals ("netty"))
+            throw new SkipException ("Sessions not supported by " + testScenario.backend);
+    }
+
     static void attribute (TestScenario testScenario) {
+        checkSessions (testScenario);
         UrlResponse res = testScenario.doPut ("/session/foo/bar");
         assertEquals (200, res.status);
 
@@ -69,6 +78,7 @@ final class Session {
     }
 
     static void sessionLifecycle (TestScenario testScenario) {
+        checkSessions (testScenario);
         UrlResponse res = testScenario.doPut ("/session/foo/bar");
         assertEquals (200, res.status);
         res = testScenario.doPut ("/session/foo/bazz");
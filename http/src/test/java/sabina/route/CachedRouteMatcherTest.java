@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static org.testng.Assert.*;
+import static sabina.HttpMethod.GET;
+import static sabina.HttpMethod.POST;
+
+import org.testng.annotations.Test;
+import sabina.Route;
+
+@Test public class CachedRouteMatcherTest {
+    private static CachedRouteMatcher matcher (int size) {
+        CachedRouteMatcher matcher = (CachedRouteMatcher)RouteMatcherFactory.create ("trie", size);
+        matcher.processRoute (new Route (GET, "/json", it -> "json"));
+        matcher.processRoute (new Route (GET, "/world/:id", it -> "world"));
+        matcher.processRoute (Route.cached (GET, "/fortune/:id", it -> "fortune"));
+        return matcher;
+    }
+
+    public void static_routes_are_cached () {
+        CachedRouteMatcher matcher = matcher (10);
+
+        RouteMatch match = matcher.findTarget (GET, "/json");
+        assertSame (matcher.findTarget (GET, "/json"), match);
+        assertEquals (matcher.targets ().hits (), 1);
+        assertEquals (matcher.targets ().misses (), 1);
+    }
+
+    public void param_routes_are_only_cached_if_they_opt_in () {
+        CachedRouteMatcher matcher = matcher (10);
+
+        matcher.findPlan (GET, "/world/1");
+        matcher.findPlan (GET, "/fortune/1");
+        matcher.findPlan (GET, "/missing");
+        assertEquals (matcher.plans ().size (), 1);
+        assertNotNull (matcher.findPlan (GET, "/fortune/1").target);
+        assertEquals (matcher.plans ().hits (), 1);
+    }
+
+    public void cache_is_keyed_by_method () {
+        CachedRouteMatcher matcher = matcher (10);
+
+        assertNotNull (matcher.findTarget (GET, "/json"));
+        assertNull (matcher.findTarget (POST, "/json"));
+    }
+
+    public void cache_size_is_bounded () {
+        CachedRouteMatcher matcher = matcher (2);
+        for (int ii = 0; ii < 10; ii++)
+            matcher.findTarget (GET, "/fortune/" + ii);
+
+        assertEquals (matcher.targets ().size (), 2);
+    }
+
+    public void referenced_entries_are_evicted_last () {
+        CachedRouteMatcher matcher = matcher (2);
+        matcher.findTarget (GET, "/json");
+        matcher.findTarget (GET, "/fortune/1");
+        matcher.findTarget (GET, "/json");
+        matcher.findTarget (GET, "/fortune/2");
+
+        long hits = matcher.targets ().hits ();
+        matcher.findTarget (GET, "/json");
+        assertEquals (matcher.targets ().hits (), hits + 1);
+    }
+
+    public void cache_is_cleared_when_routes_are_added () {
+        CachedRouteMatcher matcher = matcher (10);
+        matcher.findTarget (GET, "/json");
+        matcher.processRoute (new Route (GET, "/plaintext", it -> "text"));
+
+        assertEquals (matcher.targets ().size (), 0);
+    }
+
+    public void cache_is_cleared_when_routes_are_removed () {
+        CachedRouteMatcher matcher = matcher (10);
+        matcher.findTarget (GET, "/json");
+        assertTrue (matcher.removeRoute (GET, "/json"));
+
+        assertEquals (matcher.targets ().size (), 0);
+        assertEquals (matcher.targets ().hits (), 0);
+        assertEquals (matcher.targets ().misses (), 1);
+        assertNull (matcher.findTarget (GET, "/json"));
+    }
+
+    public void plans_are_cached_again_when_conditional_routes_are_removed () {
+        CachedRouteMatcher matcher = matcher (10);
+        matcher.processRoute (Route.conditional (
+            GET, "/json", RouteConditions.conditions ().host ("api.example.com"), it -> "api"));
+
+        matcher.findPlan (GET, "/json");
+        assertEquals (matcher.plans ().size (), 0);
+
+        assertTrue (matcher.removeRoute (GET, "/json"));
+        matcher.processRoute (new Route (GET, "/json", it -> "json"));
+        matcher.findPlan (GET, "/json");
+        assertEquals (matcher.plans ().size (), 1);
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void cache_size_must_be_positive () {
+        new MatchCache<RouteMatch> (0);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.route;
+
+import static org.testng.Assert.*;
+import static sabina.HttpMethod.BEFORE;
+import static sabina.HttpMethod.GET;
+import static sabina.Route.conditional;
+import static sabina.route.RouteConditions.conditions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+import sabina.Route;
+
+@Test public class RouteConditionsTest {
+    private static RequestHeaders headers (String... namesAndValues) {
+        Map<String, String> headers = new HashMap<> ();
+        for (int ii = 0; ii < namesAndValues.length; ii += 2)
+            headers.put (namesAndValues[ii].toLowerCase (), namesAndValues[ii + 1]);
+        return name -> headers.get (name.toLowerCase ());
+    }
+
+    private static void addRoutes (RouteMatcher matcher) {
+        matcher.processRoute (
+            conditional (GET, "/", conditions ().header ("X-Api-Version", "2"), it -> "v2"));
+        matcher.processRoute (
+            conditional (GET, "/", conditions ().host ("api.example.com"), it -> "api"));
+        matcher.processRoute (
+            conditional (GET, "/", conditions ().host ("*.example.com"), it -> "subdomain"));
+        matcher.processRoute (new Route (GET, "/", it -> "default"));
+    }
+
+    private static Object target (RouteMatcher matcher, RequestHeaders headers) {
+        return matcher.findPlan (GET, PathSegments.of ("/"), headers).target.handler.apply (null);
+    }
+
+    private static Object produced (RouteMatcher matcher, String accept) {
+        RequestHeaders headers = accept == null? headers () : headers ("Accept", accept);
+        PathSegments path = PathSegments.of ("/data");
+        return matcher.findPlan (GET, path, headers).target.handler.apply (null);
+    }
+
+    public void hosts_are_matched_without_port_and_ignoring_case () {
+        RouteConditions host = conditions ().host ("api.example.com");
+        assertTrue (host.matches (headers ("Host", "API.example.com:8080")));
+        assertTrue (host.matches (headers ("Host", "api.example.com")));
+        assertFalse (host.matches (headers ("Host", "www.example.com")));
+        assertFalse (host.matches (RequestHeaders.NONE));
+
+        RouteConditions ipv6 = conditions ().host ("[::1]");
+        assertTrue (ipv6.matches (headers ("Host", "[::1]:8080")));
+        assertTrue (ipv6.matches (headers ("Host", "[::1]")));
+    }
+
+    public void wildcard_hosts_match_subdomains () {
+        RouteConditions host = conditions ().host ("*.example.com");
+        assertTrue (host.matches (headers ("Host", "a.b.example.com:80")));
+        assertFalse (host.matches (headers ("Host", "example.com")));
+        assertFalse (host.matches (headers ("Host", "other.com")));
+    }
+
+    public void first_route_whose_conditions_hold_is_used () {
+        for (RouteMatcher matcher : new RouteMatcher[] {
+            new SimpleRouteMatcher (), new TrieRouteMatcher (),
+            RouteMatcherFactory.create ("trie", 10) }) {
+
+            addRoutes (matcher);
+
+            assertEquals (target (matcher, headers ("X-Api-Version", "2")), "v2");
+            assertEquals (target (matcher, headers ("Host", "api.example.com")), "api");
+            assertEquals (target (matcher, headers ("Host", "www.example.com")), "subdomain");
+            assertEquals (target (matcher, headers ("Host", "localhost")), "default");
+            assertEquals (matcher.findTarget (GET, "/").entry.path, "/");
+            assertEquals (matcher.findTargets (GET, "/").size (), 4);
+        }
+    }
+
+    public void trie_matcher_finds_host_routes_like_simple_matcher () {
+        RouteMatcher simple = new SimpleRouteMatcher ();
+        RouteMatcher trie = new TrieRouteMatcher ();
+        for (RouteMatcher matcher : new RouteMatcher[] { simple, trie }) {
+            matcher.processRoute (conditional (GET, "/files/*",
+                conditions ().host ("a.example.com").header ("X-Api-Version", "2"), it -> "v2"));
+            for (String host : new String[] { "a.example.com", "B.example.com", "*.example.com" })
+                for (String path : new String[] { "/", "/files/*" })
+                    matcher.processRoute (
+                        conditional (GET, path, conditions ().host (host), it -> host + path));
+            matcher.processRoute (new Route (GET, "/*", it -> "default"));
+        }
+
+        String[] hosts = { "a.example.com", "A.EXAMPLE.COM:80", "b.example.com", "c.example.com",
+            "example.com", "[::1]:80", null };
+        for (String host : hosts)
+            for (String path : new String[] { "/", "/files/", "/files/a", "/other" }) {
+                RequestHeaders headers = host == null? headers () : headers ("Host", host);
+                PathSegments segments = PathSegments.of (path);
+                assertEquals (
+                    trie.findPlan (GET, segments, headers).target.handler.apply (null),
+                    simple.findPlan (GET, segments, headers).target.handler.apply (null));
+            }
+
+        RequestHeaders v2 = headers ("Host", "a.example.com", "X-Api-Version", "2");
+        assertEquals (trie.findPlan (GET, PathSegments.of ("/files/a"), v2)
+            .target.handler.apply (null), "v2");
+        assertEquals (trie.findTargets (GET, "/files/a").size (), 5);
+    }
+
+    public void route_preferred_by_accept_header_is_used () {
+        for (RouteMatcher matcher : new RouteMatcher[] {
+            new SimpleRouteMatcher (), new TrieRouteMatcher () }) {
+
+            matcher.processRoute (new Route (GET, "/data", it -> "fallback"));
+            for (String type : new String[] { "json", "xml", "yaml" })
+                matcher.processRoute (conditional (
+                    GET, "/data", conditions ().produces ("application/" + type), it -> type));
+
+            assertEquals (produced (matcher, null), "json");
+            assertEquals (produced (matcher, "application/xml"), "xml");
+            assertEquals (produced (matcher, "application/json;q=0.5, application/yaml"), "yaml");
+            assertEquals (produced (matcher, "application/*;q=0.2, application/json;q=0"), "xml");
+            assertEquals (produced (matcher, "text/html"), "fallback");
+        }
+    }
+
+    public void accepted_type_is_negotiated () {
+        RouteConditions conditions = conditions ().produces ("text/plain", "application/json");
+        assertEquals (conditions.negotiate (headers ()), "text/plain");
+        assertEquals (conditions.negotiate (headers ("Accept", "*/*;q=0.1, application/*")),
+            "application/json");
+        assertNull (conditions.negotiate (headers ("Accept", "image/png")));
+        assertNull (conditions ().negotiate (headers ()));
+    }
+
+    public void accept_headers_are_parsed_once () {
+        String header = "text/html, */*;q=0.8";
+        assertSame (AcceptHeader.of (header), AcceptHeader.of (header));
+        assertEquals (AcceptHeader.of (header).quality ("text/css"), 0.8F);
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void filters_can_not_have_conditions () {
+        conditional (BEFORE, "/", conditions ().host ("a"), it -> "");
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static sabina.HttpMethod.*;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+import sabina.Route;
+
+@Test public class RoutePlanTest {
+    private static final String[] ROUTES = {
+        "/", "/hi", "/hi/", "/users/:id", "/users/:id/", "/files/*", "/a/*/c", "/a/:b/:c",
+    };
+
+    private static final String[] FILTERS = {
+        "/hi", "/hi/", "/users/admin", "/users/:name", "/users/*", "/files/*", "/files/a",
+        "/a/b/*", "/a/*", "/*", "*", "/hi*", "/:x/", "/users/:id<int>",
+    };
+
+    private static final String[] PATHS = {
+        "/", "/hi", "/hi/", "/users/admin", "/users/joe", "/users/joe/", "/files/", "/files/a",
+        "/files/a/b", "/a/b/c", "/a/x/c", "/a/b/d", "/users/12",
+    };
+
+    private static List<Route> routes (List<RouteMatch> matches) {
+        return matches.stream ().map (it -> it.entry).collect (toList ());
+    }
+
+    public void plan_filters_are_the_same_than_matched_filters () {
+        for (RouteMatcher matcher : new RouteMatcher [] {
+            new SimpleRouteMatcher (), new TrieRouteMatcher () }) {
+
+            matcher.processRoute (new Route (BEFORE, it -> "all"));
+            for (String path : FILTERS) {
+                matcher.processRoute (new Route (BEFORE, path, it -> path));
+                matcher.processRoute (new Route (AFTER, path, it -> path));
+            }
+            for (String path : ROUTES)
+                matcher.processRoute (new Route (GET, path, it -> path));
+
+            for (String path : PATHS) {
+                PathSegments segments = PathSegments.of (path);
+                RoutePlan plan = matcher.findPlan (GET, segments);
+                assertEquals (plan.target, matcher.findTarget (GET, path).entry, path);
+                assertEquals (plan.before (segments), routes (matcher.findTargets (BEFORE, path)));
+                assertEquals (plan.after (segments), routes (matcher.findTargets (AFTER, path)));
+            }
+        }
+    }
+
+    public void plans_are_cached_by_route () {
+        RouteMatcher matcher = new TrieRouteMatcher ();
+        matcher.processRoute (new Route (BEFORE, "/users/*", it -> "filter"));
+        matcher.processRoute (new Route (GET, "/users/:id", it -> "route"));
+
+        assertSame (matcher.findPlan (GET, "/users/1"), matcher.findPlan (GET, "/users/2"));
+    }
+
+    public void plans_are_rebuilt_when_routes_are_added () {
+        RouteMatcher matcher = new SimpleRouteMatcher ();
+        matcher.processRoute (new Route (GET, "/hi", it -> "route"));
+        PathSegments path = PathSegments.of ("/hi");
+        assertEquals (matcher.findPlan (GET, path).before (path).size (), 0);
+
+        matcher.processRoute (new Route (BEFORE, "/hi", it -> "filter"));
+        assertEquals (matcher.findPlan (GET, path).before (path).size (), 1);
+    }
+
+    public void requests_without_route_have_a_plan_without_target () {
+        RouteMatcher matcher = new TrieRouteMatcher ();
+        matcher.processRoute (new Route (AFTER, "/missing", it -> "filter"));
+
+        RoutePlan plan = matcher.findPlan (GET, "/missing");
+        assertNull (plan.target);
+        assertEquals (plan.after (PathSegments.of ("/missing")).size (), 1);
+        assertEquals (plan.after (PathSegments.of ("/other")).size (), 0);
+    }
+}
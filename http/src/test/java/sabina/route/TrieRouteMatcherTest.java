@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.route;
+
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.*;
+import static sabina.HttpMethod.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import org.testng.annotations.Test;
+import sabina.HttpMethod;
+import sabina.Request;
+import sabina.Route;
+
+@Test public class TrieRouteMatcherTest {
+    private static final String[] ROUTES = {
+        "/",
+        "/hi",
+        "/hi/",
+        "/param/:param",
+        "/param/fixed",
+        "/param/:param/",
+        "/files/*",
+        "/files/special/:name",
+        "/a/*/c",
+        "/a/:b/:c",
+        "*",
+        "/tworoutes/param/:param",
+        "/tworoutes/PARAM/:param",
+        "/foo*",
+        "/star/:name*",
+    };
+
+    private static final String[] PATHS = {
+        "", "/", "/hi", "/hi/", "/hi/there", "/param", "/param/", "/param/fixed", "/param/x",
+        "/param/x/", "/param/x/y", "/files", "/files/", "/files/a", "/files/a/b/c",
+        "/files/special/x", "/a/b/c", "/a/x/c", "/a/b/d", "/a/b/c/", "//hi", "/hi//",
+        "/tworoutes/param/v", "/tworoutes/PARAM/V", "/foo", "/foo*", "/foo*/bar", "/star/",
+        "/star/x", "/star/x/y", "/unknown/path",
+    };
+
+    private static void addRoutes (RouteMatcher matcher, HttpMethod method) {
+        for (String path : ROUTES)
+            matcher.processRoute (new Route (method, path, it -> path));
+    }
+
+    private static String path (RouteMatch match) {
+        return match == null? null : match.entry.path;
+    }
+
+    private static List<String> paths (List<RouteMatch> matches) {
+        return matches.stream ().map (TrieRouteMatcherTest::path).collect (toList ());
+    }
+
+    public void trie_matcher_finds_the_same_target_than_simple_matcher () {
+        RouteMatcher simple = new SimpleRouteMatcher ();
+        RouteMatcher trie = new TrieRouteMatcher ();
+        addRoutes (simple, GET);
+        addRoutes (trie, GET);
+
+        for (String path : PATHS)
+            assertEquals (
+                path (trie.findTarget (GET, path)), path (simple.findTarget (GET, path)), path);
+    }
+
+    public void trie_matcher_finds_the_same_filters_than_simple_matcher () {
+        RouteMatcher simple = new SimpleRouteMatcher ();
+        RouteMatcher trie = new TrieRouteMatcher ();
+        for (RouteMatcher matcher : new RouteMatcher[] { simple, trie }) {
+            matcher.processRoute (new Route (BEFORE, it -> "all"));
+            addRoutes (matcher, BEFORE);
+            matcher.processRoute (new Route (BEFORE, it -> "all again"));
+        }
+
+        for (String path : PATHS)
+            assertEquals (
+                paths (trie.findTargets (BEFORE, path)),
+                paths (simple.findTargets (BEFORE, path)),
+                path);
+    }
+
+    public void first_registered_route_wins () {
+        RouteMatcher trie = new TrieRouteMatcher ();
+        trie.processRoute (new Route (GET, "/users/*", it -> "wildcard"));
+        trie.processRoute (new Route (GET, "/users/:id", it -> "param"));
+        trie.processRoute (new Route (GET, "/users/me", it -> "static"));
+
+        assertEquals (trie.findTarget (GET, "/users/me").entry.path, "/users/*");
+    }
+
+    public void routes_are_matched_by_method () {
+        RouteMatcher trie = new TrieRouteMatcher ();
+        trie.processRoute (new Route (POST, "/users", it -> "post"));
+
+        assertNull (trie.findTarget (GET, "/users"));
+        assertEquals (trie.findTarget (POST, "/users").entry.path, "/users");
+    }
+
+    public void routes_can_be_removed () {
+        for (RouteMatcher matcher : new RouteMatcher[] {
+            new SimpleRouteMatcher (), new TrieRouteMatcher () }) {
+
+            matcher.processRoute (new Route (GET, "/users/:id", it -> "param"));
+            matcher.processRoute (new Route (GET, "/users/*", it -> "wildcard"));
+            matcher.processRoute (new Route (BEFORE, "/users/:id", it -> "filter"));
+
+            assertTrue (matcher.removeRoute (GET, "/users/:id"));
+            assertFalse (matcher.removeRoute (GET, "/users/:id"));
+            assertFalse (matcher.removeRoute (POST, "/users/*"));
+            assertEquals (matcher.findTarget (GET, "/users/1").entry.path, "/users/*");
+            assertEquals (matcher.findTargets (BEFORE, "/users/1").size (), 1);
+            assertEquals (matcher.findPlan (GET, "/users/1").target.path, "/users/*");
+        }
+    }
+
+    public void invalid_typed_params_fall_through_to_the_next_route () {
+        for (RouteMatcher matcher : new RouteMatcher[] {
+            new SimpleRouteMatcher (), new TrieRouteMatcher () }) {
+
+            matcher.processRoute (new Route (GET, "/t/:id<int>", it -> "int"));
+            matcher.processRoute (new Route (GET, "/t/:id<uuid>", it -> "uuid"));
+            matcher.processRoute (new Route (GET, "/t/:id", it -> "string"));
+
+            assertEquals (matcher.findTarget (GET, "/t/12").entry.path, "/t/:id<int>");
+            assertEquals (matcher.findTarget (GET, "/t/99999999999").entry.path, "/t/:id");
+            assertEquals (
+                matcher.findTarget (GET, "/t/123e4567-e89b-12d3-a456-426655440000").entry.path,
+                "/t/:id<uuid>");
+            assertEquals (
+                matcher.findTarget (GET, "/t/\uFF1123e4567-e89b-12d3-a456-426655440000").entry.path,
+                "/t/:id");
+            assertEquals (matcher.findTarget (GET, "/t/abc").entry.path, "/t/:id");
+            assertEquals (matcher.findPlan (GET, "/t/abc").target.path, "/t/:id");
+        }
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void unknown_param_types_are_rejected () {
+        new Route (GET, "/t/:id<date>", it -> "date");
+    }
+
+    @Test (
+        expectedExceptions = IllegalArgumentException.class,
+        expectedExceptionsMessageRegExp = "Unknown route matcher: 'tree' .*simple, trie.*")
+    public void unknown_matchers_are_rejected () {
+        RouteMatcherFactory.create ("tree");
+    }
+
+    public void lookups_run_while_routes_are_added () throws Exception {
+        RouteMatcher trie = new TrieRouteMatcher ();
+        trie.processRoute (new Route (GET, "/hi", it -> "hi"));
+
+        ExecutorService executor = Executors.newFixedThreadPool (4);
+        try {
+            List<Future<Boolean>> lookups = new ArrayList<> ();
+            for (int ii = 0; ii < 4; ii++)
+                lookups.add (executor.submit (() -> {
+                    boolean found = true;
+                    for (int jj = 0; jj < 10_000; jj++)
+                        found &= trie.findPlan (GET, "/hi").target != null;
+                    return found;
+                }));
+
+            for (int ii = 0; ii < 500; ii++) {
+                String path = "/route/" + ii;
+                trie.processRoute (new Route (GET, path, it -> path));
+            }
+
+            for (Future<Boolean> lookup : lookups)
+                assertTrue (lookup.get ());
+            assertEquals (trie.findTarget (GET, "/route/499").entry.path, "/route/499");
+        }
+        finally {
+            executor.shutdown ();
+        }
+    }
+
+    public void exception_handlers_are_found_by_superclass () {
+        RouteMatcher trie = new TrieRouteMatcher ();
+        BiConsumer<RuntimeException, Request> handler = (e, r) -> {};
+        trie.processFault (RuntimeException.class, handler);
+
+        assertSame (trie.findHandler (IllegalStateException.class), handler);
+        assertSame (trie.findHandler (RuntimeException.class), handler);
+        assertNull (trie.findHandler (Exception.class));
+    }
+
+    public void exception_handlers_are_resolved_again_when_faults_are_added () {
+        RouteMatcher trie = new TrieRouteMatcher ();
+        BiConsumer<RuntimeException, Request> runtime = (e, r) -> {};
+        BiConsumer<IllegalStateException, Request> state = (e, r) -> {};
+        trie.processFault (RuntimeException.class, runtime);
+        assertSame (trie.findHandler (IllegalStateException.class), runtime);
+
+        trie.processFault (IllegalStateException.class, state);
+        assertSame (trie.findHandler (IllegalStateException.class), state);
+        assertSame (trie.findHandler (IllegalArgumentException.class), runtime);
+    }
+}
@@ -14,8 +14,12 @@
 
 package sabina.server;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 
 import org.testng.annotations.Test;
 
@@ -39,4 +43,21 @@ import org.testng.annotations.Test;
     public void create_invalid_backend_results_in_exception () {
         BackendFactory.create ("bad", null, false);
     }
+
+    @Test (
+        expectedExceptions = IllegalArgumentException.class,
+        expectedExceptionsMessageRegExp = "Unknown handlers executor: 'bad' .*platform, virtual.*")
+    public void create_invalid_executor_results_in_exception () {
+        BackendFactory.create ("jetty", null, "bad", new DefaultHeaders (), false);
+    }
+
+    public void platform_executor_runs_handlers_in_container_threads () {
+        assertNull (HandlerExecutors.create ("platform"));
+    }
+
+    public void virtual_executor_falls_back_to_container_threads () {
+        boolean virtualThreads = Arrays.stream (Thread.class.getMethods ())
+            .anyMatch (it -> it.getName ().equals ("ofVirtual"));
+        assertEquals (HandlerExecutors.create ("virtual") != null, virtualThreads);
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.testng.annotations.Test;
+
+@Test public class CompressionTest {
+    private static final String TEXT = new String (new char[2048]).replace ('\0', 'a');
+
+    private static String read (InputStream input) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream ();
+        byte[] buffer = new byte[1024];
+        for (int count = input.read (buffer); count != -1; count = input.read (buffer))
+            result.write (buffer, 0, count);
+        return new String (result.toByteArray (), UTF_8);
+    }
+
+    public void gzip_is_preferred_and_rejected_encodings_are_skipped () {
+        assertEquals (Compression.encoding ("deflate, gzip"), "gzip");
+        assertEquals (Compression.encoding ("gzip;q=0, deflate;q=0.5"), "deflate");
+        assertEquals (Compression.encoding ("*"), "gzip");
+        assertNull (Compression.encoding ("br, identity"));
+        assertNull (Compression.encoding (null));
+    }
+
+    public void only_text_based_types_are_compressible () {
+        assertTrue (Compression.compressible ("text/html; charset=utf-8"));
+        assertTrue (Compression.compressible ("application/json"));
+        assertTrue (Compression.compressible ("image/svg+xml"));
+        assertFalse (Compression.compressible ("image/png"));
+        assertFalse (Compression.compressible ("application/octet-stream"));
+        assertFalse (Compression.compressible (null));
+    }
+
+    public void large_bodies_are_compressed_with_gzip () throws IOException {
+        RecordingResponse recorded = new RecordingResponse ();
+        Compression compression = new Compression (true, 1024, Deflater.DEFAULT_COMPRESSION);
+        CompressedResponse response = new CompressedResponse (recorded, compression, "gzip");
+
+        BodyWriter.write (TEXT, response, "undertow");
+        response.finish ();
+
+        assertEquals (recorded.headers.get ("Content-Encoding"), "gzip");
+        assertNull (recorded.headers.get ("Content-Length"));
+        assertTrue (recorded.body.size () < TEXT.length ());
+        InputStream input =
+            new GZIPInputStream (new ByteArrayInputStream (recorded.body.toByteArray ()));
+        assertEquals (read (input), TEXT);
+    }
+
+    public void deflaters_are_reused () throws IOException {
+        Compression compression = new Compression (true, 1024, Deflater.DEFAULT_COMPRESSION);
+        Deflater deflater = compression.acquire ("deflate");
+        compression.release ("deflate", deflater);
+        assertSame (compression.acquire ("deflate"), deflater);
+        compression.release ("deflate", deflater);
+
+        for (int ii = 0; ii < 2; ii++) {
+            RecordingResponse recorded = new RecordingResponse ();
+            CompressedResponse response =
+                new CompressedResponse (recorded, compression, "deflate");
+            BodyWriter.write (TEXT.getBytes (UTF_8), response, "undertow");
+            response.finish ();
+
+            InputStream input = new InflaterInputStream (
+                new ByteArrayInputStream (recorded.body.toByteArray ()));
+            assertEquals (read (input), TEXT);
+        }
+    }
+
+    public void small_bodies_are_not_compressed () throws IOException {
+        RecordingResponse recorded = new RecordingResponse ();
+        Compression compression = new Compression (true, 1024, Deflater.DEFAULT_COMPRESSION);
+        CompressedResponse response = new CompressedResponse (recorded, compression, "gzip");
+
+        BodyWriter.write ("Hello".getBytes (UTF_8), response, "undertow");
+        response.finish ();
+
+        assertNull (recorded.headers.get ("Content-Encoding"));
+        assertEquals (recorded.headers.get ("Content-Length"), "5");
+        assertEquals (new String (recorded.body.toByteArray (), UTF_8), "Hello");
+    }
+}
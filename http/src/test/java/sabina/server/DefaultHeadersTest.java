@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+@Test public class DefaultHeadersTest {
+    public void http_date_is_formatted_as_rfc_1123 () {
+        String date = DefaultHeaders.httpDate ();
+        assertTrue (date.matches ("\\w{3}, \\d{2} \\w{3} \\d{4} \\d{2}:\\d{2}:\\d{2} GMT"), date);
+        ZonedDateTime.parse (date, DateTimeFormatter.RFC_1123_DATE_TIME);
+    }
+
+    public void headers_are_written_in_order_and_replaced_by_name () {
+        DefaultHeaders headers = new DefaultHeaders ();
+        headers.add ("Server", "Sabina");
+        headers.add ("X-Frame-Options", "DENY");
+        headers.add ("server", "Other");
+
+        RecordingResponse response = new RecordingResponse ();
+        headers.write (response);
+        Map<String, String> written = response.headers;
+        assertEquals (written.size (), 2);
+        assertEquals (written.get ("Server"), "Other");
+        assertEquals (written.get ("X-Frame-Options"), "DENY");
+    }
+
+    public void date_is_written_if_enabled () {
+        DefaultHeaders headers = new DefaultHeaders ();
+        RecordingResponse response = new RecordingResponse ();
+        headers.write (response);
+        Map<String, String> written = response.headers;
+        assertEquals (written.size (), 0);
+
+        headers.date (true);
+        headers.write (response);
+        assertTrue (written.containsKey ("Date"));
+        assertEquals (written.size (), 1);
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void headers_without_value_are_rejected () {
+        new DefaultHeaders ().add ("Server", null);
+    }
+}
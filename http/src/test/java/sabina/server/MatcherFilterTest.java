@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static co.there4.bali.Configuration.configuration;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonMap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static sabina.HttpMethod.AFTER;
+import static sabina.HttpMethod.BEFORE;
+import static sabina.HttpMethod.GET;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+import sabina.Route;
+import sabina.route.PathSegments;
+import sabina.route.RouteMatcher;
+import sabina.route.RouteMatcherFactory;
+
+@Test public class MatcherFilterTest {
+    private static ServerRequest request (String method, String uri) {
+        return (ServerRequest)Proxy.newProxyInstance (
+            ServerRequest.class.getClassLoader (),
+            new Class<?>[] { ServerRequest.class },
+            (proxy, call, args) ->
+                call.getName ().equals ("method")? method :
+                call.getName ().equals ("uri")? uri :
+                null
+        );
+    }
+
+    private static boolean nonBlocking (MatcherFilter filter, String method, String uri) {
+        ServerRequest request = request (method, uri);
+        PathSegments path = PathSegments.of (uri);
+        return filter.nonBlocking (request, path, filter.plan (request, path));
+    }
+
+    public void only_non_blocking_routes_without_filters_skip_dispatching () {
+        RouteMatcher matcher = RouteMatcherFactory.create ("simple");
+        matcher.processRoute (Route.nonBlocking (GET, "/plain", it -> "plain"));
+        matcher.processRoute (Route.nonBlocking (GET, "/filtered", it -> "filtered"));
+        matcher.processRoute (new Route (GET, "/blocking", it -> "blocking"));
+        matcher.processRoute (new Route (BEFORE, "/filtered", it -> null));
+
+        MatcherFilter filter = new MatcherFilter (matcher, "undertow-native", false);
+
+        assertTrue (nonBlocking (filter, "GET", "/plain"));
+        assertFalse (nonBlocking (filter, "GET", "/filtered"));
+        assertFalse (nonBlocking (filter, "GET", "/blocking"));
+        assertFalse (nonBlocking (filter, "GET", "/missing"));
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void unknown_methods_are_rejected_when_matched () {
+        MatcherFilter filter =
+            new MatcherFilter (RouteMatcherFactory.create ("simple"), "undertow-native", false);
+        filter.plan (request ("BREW", "/plain"), PathSegments.of ("/plain"));
+    }
+
+    public void static_files_and_streamed_bodies_are_dispatched_with_an_executor ()
+        throws IOException {
+
+        Path folder = Files.createTempDirectory ("static");
+        Path file = Files.write (folder.resolve ("file.txt"), "file".getBytes (UTF_8));
+        try {
+            RouteMatcher matcher = RouteMatcherFactory.create ("simple");
+            matcher.processRoute (new Route (GET, "/stream", it ->
+                new ByteArrayInputStream ("stream".getBytes (UTF_8))));
+
+            MatcherFilter filter = new MatcherFilter (
+                matcher, "undertow-native", Runnable::run, new DefaultHeaders (), false);
+            filter.serveFiles ("", folder.toString ());
+
+            assertFalse (nonBlocking (filter, "GET", "/file.txt"));
+            assertFalse (nonBlocking (filter, "GET", "/stream"));
+            filter.closeFiles ();
+        }
+        finally {
+            Files.delete (file);
+            Files.delete (folder);
+        }
+    }
+
+    public void non_blocking_routes_are_dispatched_if_compression_is_enabled () {
+        RouteMatcher matcher = RouteMatcherFactory.create ("simple");
+        matcher.processRoute (Route.nonBlocking (GET, "/plain", it -> "plain"));
+
+        configuration ().load (singletonMap ("sabina.compression", "true"));
+        try {
+            MatcherFilter filter = new MatcherFilter (matcher, "undertow-native", false);
+            assertFalse (nonBlocking (filter, "GET", "/plain"));
+        }
+        finally {
+            configuration ().load (singletonMap ("sabina.compression", "false"));
+        }
+    }
+
+    public void filters_run_for_static_files () throws IOException {
+        Path folder = Files.createTempDirectory ("static");
+        Path secret = Files.write (folder.resolve ("secret.txt"), "secret".getBytes (UTF_8));
+        Path open = Files.write (folder.resolve ("open.txt"), "open".getBytes (UTF_8));
+        try {
+            RouteMatcher matcher = RouteMatcherFactory.create ("simple");
+            matcher.processRoute (new Route (BEFORE, "/secret.txt", it -> {
+                it.halt (401);
+                return null;
+            }));
+            matcher.processRoute (new Route (AFTER, "/*", it -> {
+                it.header ("Cache-Control", "no-cache");
+                return null;
+            }));
+
+            MatcherFilter filter = new MatcherFilter (matcher, "undertow-native", false);
+            filter.serveFiles ("", folder.toString ());
+
+            RecordingResponse response = new RecordingResponse ();
+            filter.handle (request ("GET", "/secret.txt"), response);
+            assertEquals (response.status, 401);
+            assertEquals (response.body.size (), 0);
+
+            response = new RecordingResponse ();
+            filter.handle (request ("GET", "/open.txt"), response);
+            assertEquals (response.status, 200);
+            assertEquals (response.headers.get ("Cache-Control"), "no-cache");
+            assertEquals (new String (response.body.toByteArray (), UTF_8), "open");
+            filter.closeFiles ();
+        }
+        finally {
+            Files.delete (secret);
+            Files.delete (open);
+            Files.delete (folder);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+
+/**
+ * Response recording the status, headers and body written by the code under test. Content type
+ * and length are recorded as headers.
+ *
+ * @author jamming
+ */
+final class RecordingResponse implements ServerResponse {
+    final Map<String, String> headers = new LinkedHashMap<> ();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream ();
+    int status;
+
+    @Override public void status (int status) {
+        this.status = status;
+    }
+
+    @Override public String contentType () {
+        return headers.get ("Content-Type");
+    }
+
+    @Override public void contentType (String contentType) {
+        headers.put ("Content-Type", contentType);
+    }
+
+    @Override public void contentLength (long length) {
+        headers.put ("Content-Length", String.valueOf (length));
+    }
+
+    @Override public String header (String name) {
+        return headers.get (name);
+    }
+
+    @Override public void addHeader (String name, String value) {
+        headers.put (name, value);
+    }
+
+    @Override public void setHeader (String name, String value) {
+        headers.put (name, value);
+    }
+
+    @Override public void addDateHeader (String name, long date) {
+        headers.put (name, String.valueOf (date));
+    }
+
+    @Override public void addCookie (Cookie cookie) {
+        headers.put ("Set-Cookie", cookie.getName () + "=" + cookie.getValue ());
+    }
+
+    @Override public void redirect (String location) {
+        status = 302;
+        headers.put ("Location", location);
+    }
+
+    @Override public void sendError (int status) {
+        this.status = status;
+    }
+
+    @Override public boolean committed () {
+        return false;
+    }
+
+    @Override public OutputStream outputStream () {
+        return body;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package sabina.server;
+
+import static org.testng.Assert.assertEquals;
+import static sabina.server.Settings.setting;
+
+import org.testng.annotations.Test;
+
+@Test public class SettingsTest {
+    public void defaults_are_loaded_without_a_server () {
+        assertEquals (setting ("sabina.netty.threads", 0), 200);
+        assertEquals (setting ("sabina.executor", ""), "platform");
+        assertEquals (setting ("sabina.static.watch", true), false);
+    }
+
+    public void missing_settings_take_the_default () {
+        assertEquals (setting ("sabina.missing", 7), 7);
+        assertEquals (setting ("sabina.missing", "default"), "default");
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2015 Juan José Aguililla. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package sabina.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test public class StaticFilesTest {
+    private Path folder;
+
+    private static ServerRequest request (String method, String uri, Map<String, String> headers) {
+        return (ServerRequest)Proxy.newProxyInstance (
+            ServerRequest.class.getClassLoader (),
+            new Class<?>[] { ServerRequest.class },
+            (proxy, call, args) -> {
+                switch (call.getName ()) {
+                    case "method":
+                        return method;
+                    case "uri":
+                        return uri;
+                    case "header":
+                        return headers.get (args[0]);
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    @BeforeClass public void create_folder () throws IOException {
+        folder = Files.createTempDirectory ("static");
+        Files.write (folder.resolve ("index.html"), "<h1>Index</h1>".getBytes (UTF_8));
+        Files.createDirectory (folder.resolve ("css"));
+        Files.write (folder.resolve ("css/style.css"), "body {}".getBytes (UTF_8));
+        Files.write (folder.resolve ("big.txt"), "01234567890123456789".getBytes (UTF_8));
+        Files.write (folder.resolve ("mapped.txt"), new byte[64]);
+        Files.write (folder.resolve ("module.wasm"), new byte[] { 0, 'a', 's', 'm' });
+        Files.write (folder.resolve ("app.js"), "var app = {};".getBytes (UTF_8));
+        try (OutputStream output = new GZIPOutputStream (
+            Files.newOutputStream (folder.resolve ("app.js.gz")))) {
+
+            output.write ("var app = {};".getBytes (UTF_8));
+        }
+    }
+
+    private StaticFiles files () {
+        return new StaticFiles ("undertow", null, folder.toString (), 1024, 16, 32);
+    }
+
+    public void no_folders_do_not_create_a_handler () {
+        assertNull (StaticFiles.create ("undertow", "", null));
+    }
+
+    public void content_types_are_resolved_from_the_extension () {
+        assertEquals (StaticFiles.contentType ("a/b.CSS"), "text/css");
+        assertEquals (StaticFiles.contentType ("app.js"), "application/javascript");
+        assertEquals (StaticFiles.contentType ("file"), "application/octet-stream");
+    }
+
+    public void files_are_sent_with_validators () throws IOException {
+        RecordingResponse response = new RecordingResponse ();
+        boolean served = files ().serve (
+            request ("GET", "/css/style.css", new HashMap<> ()), response);
+
+        assertTrue (served);
+        assertEquals (response.status, 200);
+        assertEquals (response.headers.get ("Content-Type"), "text/css");
+        assertEquals (response.headers.get ("Content-Length"), "7");
+        assertNotNull (response.headers.get ("ETag"));
+        assertNotNull (response.headers.get ("Last-Modified"));
+        assertEquals (new String (response.body.toByteArray (), UTF_8), "body {}");
+    }
+
+    public void folders_are_served_with_their_welcome_file () throws IOException {
+        StaticFiles files = files ();
+        assertEquals (new String (files.find ("/").content, UTF_8), "<h1>Index</h1>");
+        assertNull (files.find ("/css/"));
+    }
+
+    public void cached_files_are_reused () throws IOException {
+        StaticFiles files = files ();
+        StaticFiles.StaticFile file = files.find ("/index.html");
+        assertNotNull (file.content);
+        assertSame (files.find ("/index.html"), file);
+    }
+
+    public void large_files_are_not_cached () throws IOException {
+        StaticFiles files = files ();
+        StaticFiles.StaticFile file = files.find ("/big.txt");
+        assertNull (file.content);
+        assertEquals (file.length, 20);
+        assertNotSame (files.find ("/big.txt"), file);
+    }
+
+    public void matching_etags_return_not_modified () throws IOException {
+        StaticFiles files = files ();
+        String etag = files.find ("/index.html").etag;
+        Map<String, String> requestHeaders = new HashMap<> ();
+        requestHeaders.put ("If-None-Match", "W/\"other\", " + etag);
+        RecordingResponse response = new RecordingResponse ();
+
+        assertTrue (files.serve (request ("GET", "/index.html", requestHeaders), response));
+        assertEquals (response.status, 304);
+        assertEquals (response.body.size (), 0);
+    }
+
+    public void unmodified_files_return_not_modified () throws IOException {
+        StaticFiles files = files ();
+        Map<String, String> requestHeaders = new HashMap<> ();
+        requestHeaders.put ("If-Modified-Since", files.find ("/index.html").lastModifiedHeader);
+        RecordingResponse response = new RecordingResponse ();
+
+        files.serve (request ("GET", "/index.html", requestHeaders), response);
+        assertEquals (response.status, 304);
+    }
+
+    public void head_requests_do_not_send_the_body () throws IOException {
+        RecordingResponse response = new RecordingResponse ();
+
+        assertTrue (files ().serve (
+            request ("HEAD", "/index.html", new HashMap<> ()), response));
+        assertEquals (response.headers.get ("Content-Length"), "14");
+        assertEquals (response.body.size (), 0);
+    }
+
+    public void other_methods_and_missing_files_are_not_handled () throws IOException {
+        StaticFiles files = files ();
+        RecordingResponse response = new RecordingResponse ();
+
+        assertFalse (files.serve (
+            request ("POST", "/index.html", new HashMap<> ()), response));
+        assertFalse (files.serve (
+            request ("GET", "/missing.html", new HashMap<> ()), response));
+    }
+
+    public void files_of_any_type_are_indexed () throws IOException {
+        StaticFiles.StaticFile file = files ().find ("/module.wasm");
+        assertEquals (file.contentType, "application/wasm");
+        assertEquals (file.length, 4);
+    }
+
+    public void files_are_found_after_refreshing_the_index () throws IOException {
+        StaticFiles files = files ();
+        Path added = folder.resolve ("added.json");
+        try {
+            Files.write (added, "{}".getBytes (UTF_8));
+            assertNull (files.find ("/added.json"));
+
+            files.refresh ();
+            assertEquals (new String (files.find ("/added.json").content, UTF_8), "{}");
+        }
+        finally {
+            Files.delete (added);
+        }
+    }
+
+    public void deleted_files_are_not_found () throws IOException {
+        Path removed = folder.resolve ("removed.txt");
+        Files.write (removed, "removed".getBytes (UTF_8));
+        StaticFiles files = files ();
+        Files.delete (removed);
+
+        assertNull (files.find ("/removed.txt"));
+    }
+
+    public void gzipped_copies_are_sent_to_clients_accepting_gzip () throws IOException {
+        Map<String, String> requestHeaders = new HashMap<> ();
+        requestHeaders.put ("Accept-Encoding", "deflate, gzip");
+        RecordingResponse response = new RecordingResponse ();
+
+        files ().serve (request ("GET", "/app.js", requestHeaders), response);
+        assertEquals (response.headers.get ("Content-Encoding"), "gzip");
+        assertEquals (response.headers.get ("Vary"), "Accept-Encoding");
+        assertEquals (response.headers.get ("Content-Type"), "application/javascript");
+        byte[] gzipped = Files.readAllBytes (folder.resolve ("app.js.gz"));
+        assertEquals (response.body.toByteArray (), gzipped);
+    }
+
+    public void original_files_are_sent_to_clients_not_accepting_gzip () throws IOException {
+        Map<String, String> requestHeaders = new HashMap<> ();
+        requestHeaders.put ("Accept-Encoding", "gzip;q=0");
+        RecordingResponse response = new RecordingResponse ();
+
+        files ().serve (request ("GET", "/app.js", requestHeaders), response);
+        assertNull (response.headers.get ("Content-Encoding"));
+        assertEquals (response.headers.get ("Vary"), "Accept-Encoding");
+        assertEquals (new String (response.body.toByteArray (), UTF_8), "var app = {};");
+    }
+
+    public void range_headers_are_parsed () {
+        assertEquals (StaticFiles.ranges ("bytes=0-4", 10), new long[] { 0, 4 });
+        assertEquals (StaticFiles.ranges ("bytes=5-", 10), new long[] { 5, 9 });
+        assertEquals (StaticFiles.ranges ("bytes=-3", 10), new long[] { 7, 9 });
+        assertEquals (StaticFiles.ranges ("bytes=8-20", 10), new long[] { 8, 9 });
+        assertEquals (StaticFiles.ranges ("bytes=0-0, -1", 10), new long[] { 0, 0, 9, 9 });
+        assertEquals (StaticFiles.ranges ("bytes=10-", 10), new long[0]);
+        assertNull (StaticFiles.ranges (null, 10));
+        assertNull (StaticFiles.ranges ("bytes=5-2", 10));
+        assertNull (StaticFiles.ranges ("bytes=a-", 10));
+        assertNull (StaticFiles.ranges ("items=0-1", 10));
+    }
+
+    private static Map<String, String> range (String range) {
+        Map<String, String> headers = new HashMap<> ();
+        headers.put ("Range", range);
+        return headers;
+    }
+
+    public void single_ranges_are_sent_from_any_file () throws IOException {
+        StaticFiles files = files ();
+        for (String uri : new String[] { "/index.html", "/big.txt", "/mapped.txt" }) {
+            RecordingResponse response = new RecordingResponse ();
+            long length = files.find (uri).length;
+
+            files.serve (request ("GET", uri, range ("bytes=2-5")), response);
+            assertEquals (response.status, 206);
+            assertEquals (response.headers.get ("Content-Range"), "bytes 2-5/" + length);
+            assertEquals (response.headers.get ("Content-Length"), "4");
+            assertEquals (response.headers.get ("Accept-Ranges"), "bytes");
+            assertEquals (response.body.size (), 4);
+        }
+
+        RecordingResponse response = new RecordingResponse ();
+        files.serve (request ("GET", "/big.txt", range ("bytes=-3")), response);
+        assertEquals (new String (response.body.toByteArray (), UTF_8), "789");
+    }
+
+    public void multiple_ranges_are_sent_in_parts () throws IOException {
+        RecordingResponse response = new RecordingResponse ();
+        files ().serve (
+            request ("GET", "/big.txt", range ("bytes=0-1,18-")), response);
+
+        String boundary = response.headers.get ("Content-Type").split ("boundary=")[1];
+        String expected = "\r\n--" + boundary + "\r\n"
+            + "Content-Type: text/plain\r\nContent-Range: bytes 0-1/20\r\n\r\n01"
+            + "\r\n--" + boundary + "\r\n"
+            + "Content-Type: text/plain\r\nContent-Range: bytes 18-19/20\r\n\r\n89"
+            + "\r\n--" + boundary + "--\r\n";
+
+        assertEquals (response.status, 206);
+        assertTrue (response.headers.get ("Content-Type").startsWith ("multipart/byteranges"));
+        assertEquals (new String (response.body.toByteArray (), UTF_8), expected);
+        String length = String.valueOf (expected.length ());
+        assertEquals (response.headers.get ("Content-Length"), length);
+    }
+
+    public void unsatisfiable_ranges_are_rejected () throws IOException {
+        RecordingResponse response = new RecordingResponse ();
+        files ().serve (request ("GET", "/big.txt", range ("bytes=20-30")), response);
+
+        assertEquals (response.status, 416);
+        assertEquals (response.headers.get ("Content-Range"), "bytes */20");
+    }
+
+    public void ranges_of_other_versions_send_the_whole_file () throws IOException {
+        Map<String, String> requestHeaders = range ("bytes=0-1");
+        requestHeaders.put ("If-Range", "\"old\"");
+        RecordingResponse response = new RecordingResponse ();
+
+        files ().serve (request ("GET", "/big.txt", requestHeaders), response);
+        assertEquals (response.status, 200);
+        assertEquals (response.body.size (), 20);
+    }
+
+    public void paths_outside_the_folders_are_rejected () throws IOException {
+        StaticFiles files = files ();
+        assertNull (files.find ("/../" + folder.getFileName () + "/index.html"));
+        assertNull (files.find ("/css/..\\index.html"));
+        assertNull (files.find ("index.html"));
+    }
+}